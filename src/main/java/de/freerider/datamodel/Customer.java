@@ -1,11 +1,19 @@
 package de.freerider.datamodel;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
  * Class for entity type Customer. Customer is an individual who acts as holder
  * of a business relationship.
  * 
+ * Name, contacts and status are copy-on-write: changes replace immutable
+ * values, such that readers always see a consistent state and can iterate
+ * contacts while they are changed. Changes of the same Customer must be
+ * serialized by the caller, the repository serializes changes of stored
+ * customers. A read-only copy freezes the current state in O(1), e.g. for
+ * repository snapshots.
+ * 
  * @since "0.1.0"
  * @version "0.1.0"
  * @author sgra64
@@ -19,24 +27,54 @@ public class Customer {
 	private long id = -1;
 
 	/**
-	 * surname, never null, mapped to "" when empty.
+	 * surname and none-surname name parts, never null, replaced on change.
+	 */
+	private volatile Name name = Name.EMPTY;
+
+	/**
+	 * contact information with multiple contact entries in insertion order,
+	 * replaced on change, see {@link Contacts}.
+	 */
+	private volatile Contacts contacts = Contacts.EMPTY;
+
+	/**
+	 * contacts for duplicate detection in O(1), only used by writers, created
+	 * when the number of contacts exceeds {@link #SCAN_LIMIT}.
+	 */
+	private Set<String> contactSet;
+
+	/*
+	 * number of contacts up to which duplicates are detected by a linear scan.
+	 */
+	private static final int SCAN_LIMIT = 8;
+
+	/**
+	 * status information of a Customer, never null.
 	 */
-	private String lastName = "";
+	private volatile Status status = Status.New;
 
 	/**
-	 * none-surname name parts, never null, mapped to "" when empty.
+	 * observer of changes, e.g. repository that maintains indexes, may be null.
 	 */
-	private String firstName = "";
+	private Listener listener;
 
 	/**
-	 * contact information with multiple contact entries.
+	 * version, incremented on every change of name, contacts or status.
 	 */
-	private List<String> contacts = new ArrayList<String>();
+	private volatile long version = 0;
 
 	/**
-	 * status information of a Customer.
+	 * true for read-only copies, whose setters throw.
 	 */
-	private Status status = Status.New;
+	private final boolean readOnly;
+
+	/**
+	 * read-only copy of the state at a version, reused while unchanged.
+	 */
+	private volatile Customer readOnlyCopy;
+
+	private static final AtomicLongFieldUpdater<Customer> VERSION = AtomicLongFieldUpdater.newUpdater(Customer.class,
+			"version");
 
 	/**
 	 * Definition of Customer Status states.
@@ -45,10 +83,148 @@ public class Customer {
 		New, InRegistration, Active, Suspended, Deleted
 	};
 
+	/**
+	 * Observer of changes of Customer objects that are relevant to indexes.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called after first- or lastName of customer has changed.
+		 * 
+		 * @param customer customer with changed name.
+		 */
+		void nameChanged(Customer customer);
+
+		/**
+		 * Called after contacts of customer have changed.
+		 * 
+		 * @param customer customer with changed contacts.
+		 */
+		void contactsChanged(Customer customer);
+
+		/**
+		 * Called after a single contact was added to customer, by default handled
+		 * as change of all contacts.
+		 * 
+		 * @param customer customer with added contact.
+		 * @param contact  added contact.
+		 */
+		default void contactAdded(Customer customer, String contact) {
+			contactsChanged(customer);
+		}
+
+		/**
+		 * Called after a single contact was removed from customer, by default
+		 * handled as change of all contacts.
+		 * 
+		 * @param customer customer with removed contact.
+		 * @param contact  removed contact.
+		 */
+		default void contactRemoved(Customer customer, String contact) {
+			contactsChanged(customer);
+		}
+
+		/**
+		 * Called after status of customer has changed.
+		 * 
+		 * @param customer customer with changed status.
+		 */
+		void statusChanged(Customer customer);
+	}
+
+	/**
+	 * Immutable pair of lastName and firstName, both never null, mapped to ""
+	 * when empty.
+	 */
+	private static final class Name {
+
+		static final Name EMPTY = new Name("", "");
+
+		final String last;
+
+		final String first;
+
+		Name(String last, String first) {
+			this.last = last;
+			this.first = first;
+		}
+	}
+
+	/**
+	 * Immutable view of contacts as the first {@code size} entries of an array
+	 * in insertion order. Adding a contact writes the array slot after the last
+	 * entry and returns a new view sharing the array (the array is grown when
+	 * full), such that adding takes amortized O(1) and entries of existing views
+	 * never change. Deleting a contact copies the array.
+	 */
+	private static final class Contacts extends AbstractList<String> {
+
+		static final Contacts EMPTY = new Contacts(new String[0], 0);
+
+		private final String[] items;
+
+		private final int size;
+
+		private Contacts(String[] items, int size) {
+			this.items = items;
+			this.size = size;
+		}
+
+		/**
+		 * Return view with contact appended, writer of the current view only.
+		 */
+		Contacts append(String contact) {
+			String[] a = items;
+			if (size == a.length) {
+				a = Arrays.copyOf(a, size + (size >> 1) + 1);
+			}
+			a[size] = contact;
+			return new Contacts(a, size + 1);
+		}
+
+		/**
+		 * Return view with the i-th contact deleted.
+		 */
+		Contacts delete(int i) {
+			String[] a = new String[size - 1];
+			System.arraycopy(items, 0, a, 0, i);
+			System.arraycopy(items, i + 1, a, i, a.length - i);
+			return new Contacts(a, a.length);
+		}
+
+		@Override
+		public String get(int i) {
+			if (i < 0 || i >= size) {
+				throw new IndexOutOfBoundsException(i);
+			}
+			return items[i];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
 	/**
 	 * Default constructor
 	 */
 	public Customer() {
+		this.readOnly = false;
+	}
+
+	/**
+	 * Constructor of read-only copy sharing the immutable state of source. The
+	 * version is read before the attributes, a later change makes the copy
+	 * outdated.
+	 */
+	private Customer(Customer source) {
+		this.version = source.version;
+		this.id = source.id;
+		this.name = source.name;
+		this.contacts = source.contacts;
+		this.status = source.status;
+		this.readOnly = true;
 	}
 
 	/**
@@ -68,6 +244,7 @@ public class Customer {
 	 * @return chainable self-reference.
 	 */
 	public Customer setId(long id) {
+		checkWritable();
 		// set id only once; id cannot be changed afterwards
 		this.id = (this.id < 0 && id >= 0) ? id : this.id;
 		return this;
@@ -81,7 +258,8 @@ public class Customer {
 	 * @return single-String name.
 	 */
 	public String getName() {
-		return this.lastName + (this.firstName.length() > 0 ? ", " + this.firstName : "");
+		Name n = this.name;
+		return n.last + (n.first.length() > 0 ? ", " + n.first : "");
 	}
 
 	/**
@@ -90,7 +268,7 @@ public class Customer {
 	 * @return value of firstName attribute, never null, mapped to "" when empty.
 	 */
 	public String getFirstName() {
-		return this.firstName;
+		return this.name.first;
 	}
 
 	/**
@@ -99,7 +277,7 @@ public class Customer {
 	 * @return value of lastName attribute, never null, mapped to "" when empty.
 	 */
 	public String getLastName() {
-		return this.lastName;
+		return this.name.last;
 	}
 
 	/**
@@ -124,8 +302,18 @@ public class Customer {
 	 * @return chainable self-reference.
 	 */
 	public Customer setName(String first, String last) {
-		this.firstName = first != null ? first.trim() : this.firstName;
-		this.lastName = last != null ? last.trim() : this.lastName;
+		checkWritable();
+		Name old = this.name;
+		first = first != null ? first.trim() : old.first;
+		last = last != null ? last.trim() : old.last;
+		if (!(old.first.equals(first) && old.last.equals(last))) {
+			this.name = new Name(last, first);
+			VERSION.incrementAndGet(this);
+			Listener l = this.listener;
+			if (l != null) {
+				l.nameChanged(this);
+			}
+		}
 		return this;
 	}
 
@@ -139,7 +327,8 @@ public class Customer {
 	}
 
 	/**
-	 * Contacts getter (as {@code Iterable<String>}).
+	 * Contacts getter (as {@code Iterable<String>}). Returns an unmodifiable
+	 * snapshot in O(1) that is not affected by later changes.
 	 * 
 	 * @return contacts as {@code Iterable<String>}.
 	 */
@@ -149,31 +338,72 @@ public class Customer {
 
 	/**
 	 * Add new contact. Only valid contacts (not null or "") are stored. Duplicate
-	 * contacts are ignored.
+	 * contacts are ignored, duplicates are detected in O(1). Takes amortized
+	 * O(1).
 	 * 
 	 * @param contact contact to add, null, "" or duplicate contacts are ignored.
 	 * @return chainable self-reference.
 	 */
 	public Customer addContact(String contact) {
+		checkWritable();
 		if (contact != null && contact.length() > 0) {
 			contact = contact.trim();
 			// avoid duplicate entries
-			if (!this.contacts.contains(contact)) {
-				this.contacts.add(contact);
+			if (append(contact)) {
+				VERSION.incrementAndGet(this);
+				Listener l = this.listener;
+				if (l != null) {
+					l.contactAdded(this, contact);
+				}
 			}
 		}
 		return this;
 	}
 
 	/**
-	 * Delete the i-th contact if {@code i >= 0} and {@code i < contacts.size()},
-	 * otherwise method has no effect.\
+	 * Add all contacts in one pass, rules of {@link #addContact(String)} apply.
+	 * Listener is notified once if any contact was added.
+	 * 
+	 * @param contacts contacts to add.
+	 * @return true if any contact was added.
+	 */
+	public boolean addContacts(Iterable<String> contacts) {
+		checkWritable();
+		boolean added = false;
+		if (contacts != null) {
+			for (String contact : contacts) {
+				if (contact != null && contact.length() > 0) {
+					added |= append(contact.trim());
+				}
+			}
+			if (added) {
+				contactsChanged();
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * Delete the i-th contact (in insertion order) if {@code i >= 0} and
+	 * {@code i < contactsCount()}, otherwise method has no effect. Takes O(k) for
+	 * k contacts to copy contacts.
 	 * 
 	 * @param i index of contact to delete.
 	 */
 	public void deleteContact(int i) {
-		if (i >= 0 && i < this.contacts.size()) {
-			this.contacts.remove(i);
+		checkWritable();
+		Contacts old = this.contacts;
+		if (i >= 0 && i < old.size()) {
+			String removed = old.get(i);
+			this.contacts = old.delete(i);
+			if (this.contactSet != null) {
+				this.contactSet.remove(removed);
+			}
+			VERSION.incrementAndGet(this);
+			Listener l = this.listener;
+			if (l != null) {
+				l.contactRemoved(this, removed);
+			}
 		}
 	}
 
@@ -181,33 +411,145 @@ public class Customer {
 	 * Delete all contacts.
 	 */
 	public void deleteAllContacts() {
-		this.contacts.clear();
+		checkWritable();
+		if (this.contacts.size() > 0) {
+			this.contacts = Contacts.EMPTY;
+			this.contactSet = null;
+			contactsChanged();
+		}
 	}
 
 	/**
 	 * Status getter.
 	 * 
-	 * @return status of customer as defined in enum Status.
+	 * @return status of customer as defined in enum Status, never null.
 	 */
 	public Customer.Status getStatus() {
 		return this.status;
 	}
 
 	/**
-	 * Status setter.
+	 * Status setter, status is only changed when argument is not null.
 	 * 
-	 * @param status customer status as defined in enum Status.
+	 * @param status customer status as defined in enum Status, ignored when null.
 	 * @return chainable self-reference.
 	 */
 	public Customer setStatus(Customer.Status status) {
-		this.status = status;
+		checkWritable();
+		Customer.Status old = this.status;
+		this.status = status != null ? status : old;
+		if (old != this.status) {
+			VERSION.incrementAndGet(this);
+			Listener l = this.listener;
+			if (l != null) {
+				l.statusChanged(this);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Version getter. The version is incremented after every change of name,
+	 * contacts or status, such that derived data (e.g. cached projections) can
+	 * be detected as outdated.
+	 * 
+	 * @return version of customer.
+	 */
+	public long getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * Listener setter, the listener is notified of changes relevant to indexes.
+	 * Set by a repository when the customer is stored.
+	 * 
+	 * @param listener observer of changes, null to remove the listener.
+	 * @return chainable self-reference.
+	 */
+	public Customer setListener(Listener listener) {
+		checkWritable();
+		this.listener = listener;
 		return this;
 	}
 
+	/**
+	 * Return read-only copy of the current state of the customer with the same
+	 * id and version. The copy shares the immutable name and contacts and is
+	 * reused while the customer is unchanged, it takes O(1). Setters of the copy
+	 * throw UnsupportedOperationException, a read-only copy cannot be stored.
+	 * 
+	 * @return read-only copy, this if customer is a read-only copy.
+	 */
+	public Customer readOnlyCopy() {
+		if (this.readOnly) {
+			return this;
+		}
+		Customer copy = this.readOnlyCopy;
+		if (copy == null || copy.version != this.version) {
+			copy = new Customer(this);
+			this.readOnlyCopy = copy;
+		}
+		return copy;
+	}
+
+	/**
+	 * Test whether customer is a read-only copy.
+	 * 
+	 * @return true if customer is a read-only copy.
+	 */
+	public boolean isReadOnly() {
+		return this.readOnly;
+	}
+
 	/*
 	 * private methods
 	 */
 
+	/**
+	 * Throw if customer is a read-only copy.
+	 */
+	private void checkWritable() {
+		if (this.readOnly) {
+			throw new UnsupportedOperationException("Customer is a read-only copy.");
+		}
+	}
+
+	/**
+	 * Append contact if not contained, duplicates are detected by a linear scan
+	 * of few contacts or by the contact set.
+	 * 
+	 * @return true if contact was appended.
+	 */
+	private boolean append(String contact) {
+		Contacts c = this.contacts;
+		if (this.contactSet != null) {
+			if (!this.contactSet.add(contact)) {
+				return false;
+			}
+		} else {
+			if (c.contains(contact)) {
+				return false;
+			}
+			if (c.size() == SCAN_LIMIT) {
+				this.contactSet = new HashSet<String>(c);
+				this.contactSet.add(contact);
+			}
+		}
+		this.contacts = c.append(contact);
+		return true;
+	}
+
+	/**
+	 * Increment version and notify listener of changed contacts.
+	 */
+	private void contactsChanged() {
+		VERSION.incrementAndGet(this);
+		Listener l = this.listener;
+		if (l != null) {
+			l.contactsChanged(this);
+		}
+	}
+
 	/**
 	 * Split single-String name into first- and last name. Examples:
 	 * 
@@ -233,7 +575,15 @@ public class Customer {
 	 */
 
 	/**
-	 * Split single-String name into first- and last name.
+	 * Split single-String name into first- and last name. The name is scanned
+	 * without regular expressions, parts are cut out of the name with at most
+	 * one substring per part.
+	 * 
+	 * Names with separator [,;] are split into lastName (before the first
+	 * separator) and firstName (last non-empty part after a separator). Other
+	 * names are split at white spaces: the last word is the lastName, preceding
+	 * words joined by single spaces are the firstName. The result does not
+	 * depend on the previous name.
 	 * 
 	 * @param name single-String name split into first- and last name
 	 */
@@ -241,33 +591,101 @@ public class Customer {
 		if (name == null)
 			return; // no change to first- and lastName attributes
 		//
-		String first = this.firstName;
-		String last = this.lastName;
-		String[] spl1 = name.split("[,;]");
-		if (spl1.length > 1) {
+		int len = name.length();
+		int firstSep = -1; // index of first separator
+		int lastSep = -1; // index of last separator
+		int partStart = 0; // start of part that contains lastChar
+		int lastChar = -1; // index of last non-separator char
+		for (int i = 0; i < len; i++) {
+			char ch = name.charAt(i);
+			if (ch == ',' || ch == ';') {
+				firstSep = firstSep < 0 ? i : firstSep;
+				lastSep = i;
+			} else {
+				partStart = lastSep + 1;
+				lastChar = i;
+			}
+		}
+		if (firstSep >= 0 && lastChar > firstSep) {
 			// name has separator: [,;]
-			for (int i = 0; i < spl1.length; i++) {
-				if (i == 0) {
-					last = spl1[0];
+			setName(trimmed(name, partStart, lastChar + 1), trimmed(name, 0, firstSep));
+			return;
+		}
+		// no separator [,;] -> split by white spaces;
+		// collect firstNames in order and lastName as last
+		int firstStart = -1, firstEnd = -1; // firstName words
+		int lastStart = -1, lastEnd = -1; // lastName word
+		boolean single = true; // firstName words separated by single spaces
+		boolean gapSingle = true; // white space before lastName word is single space
+		for (int i = 0; i < len;) {
+			while (i < len && isWhiteSpace(name.charAt(i))) {
+				i++;
+			}
+			if (i == len)
+				break;
+			int start = i;
+			while (i < len && !isWhiteSpace(name.charAt(i))) {
+				i++;
+			}
+			if (lastStart >= 0) {
+				// previous lastName word becomes firstName word
+				if (firstStart < 0) {
+					firstStart = lastStart;
 				} else {
-					// first += (i > 1? " " : "" ) + spl1[ i ].trim();
-					first = spl1[i].trim();
+					single &= gapSingle;
 				}
+				firstEnd = lastEnd;
+				gapSingle = start - lastEnd == 1 && name.charAt(lastEnd) == ' ';
 			}
-			last = spl1[0].trim();
-			first = spl1[spl1.length - 1].trim();
-			//
-		} else {
-			// no separator [,;] -> split by white spaces;
-			// collect firstNames in order and lastName as last
-			for (String s : name.split("\\s+")) {
-				if (last.length() > 0) {
-					first += (first.length() == 0 ? "" : " ") + last;
+			lastStart = start;
+			lastEnd = i;
+		}
+		String first = "";
+		if (firstStart >= 0) {
+			first = single ? name.substring(firstStart, firstEnd) : joinWords(name, firstStart, firstEnd);
+		}
+		setName(first, lastStart >= 0 ? name.substring(lastStart, lastEnd) : "");
+	}
+
+	/**
+	 * Return trimmed part [from, to) of s like {@code s.substring(from, to).trim()}.
+	 */
+	private static String trimmed(String s, int from, int to) {
+		while (from < to && s.charAt(from) <= ' ') {
+			from++;
+		}
+		while (to > from && s.charAt(to - 1) <= ' ') {
+			to--;
+		}
+		return s.substring(from, to);
+	}
+
+	/**
+	 * Return words of part [from, to) of s joined by single spaces.
+	 */
+	private static String joinWords(String s, int from, int to) {
+		StringBuilder sb = new StringBuilder(to - from);
+		boolean gap = false;
+		for (int i = from; i < to; i++) {
+			char ch = s.charAt(i);
+			if (isWhiteSpace(ch)) {
+				gap = true;
+			} else {
+				if (gap) {
+					sb.append(' ');
+					gap = false;
 				}
-				last = s;
+				sb.append(ch);
 			}
 		}
-		setName(first, last);
+		return sb.toString();
+	}
+
+	/**
+	 * White space as matched by regular expression \\s: [ \t\n\x0B\f\r].
+	 */
+	private static boolean isWhiteSpace(char ch) {
+		return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B' || ch == '\f' || ch == '\r';
 	}
 
 }
@@ -0,0 +1,485 @@
+package de.freerider.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+import de.freerider.datamodel.Customer;
+
+/**
+ * Alternative repository of Customer entities that keeps customer data in
+ * primitive columns outside the Java heap instead of holding Customer objects.
+ *
+ * Columns (one row per customer, rows are dense {@code 0 .. count()-1}):
+ *
+ * - id: {@code long} column in a direct {@code LongBuffer}.
+ *
+ * - lastName, firstName: dictionary-encoded, {@code int} codes in direct
+ * {@code IntBuffer}s, each distinct name String is held only once.
+ *
+ * - status: {@code byte} column (Status ordinal) in a direct
+ * {@code ByteBuffer}.
+ *
+ * - contacts: UTF-8 encoded, length-prefixed entries in a direct byte heap,
+ * referenced by {@code int} offset and length columns.
+ *
+ * Rows are located by an open-addressing index of {@code int} row numbers keyed
+ * by the id column. Deleting a row moves the last row into the gap.
+ *
+ * Customer objects returned by this repository are views materialized from
+ * the columns when accessed, they are detached copies: changes made to them
+ * are not stored unless the object is saved again.
+ *
+ * Name dictionary entries are not reclaimed before deleteAll() is called. All
+ * operations are synchronized on the repository instance.
+ */
+
+public class ColumnarCustomerRepository implements CrudRepository<Customer, Long> {
+
+	private static final long PHI = 0x9E3779B97F4A7C15L;
+
+	private static final int MIN_ROWS = 1024;
+
+	private static final Customer.Status[] STATUS = Customer.Status.values();
+
+	/*
+	 * row columns, direct (off-heap) buffers.
+	 */
+	private LongBuffer ids;
+
+	private IntBuffer lastNames;
+
+	private IntBuffer firstNames;
+
+	private ByteBuffer statuses;
+
+	private IntBuffer contactOffsets;
+
+	private IntBuffer contactLengths;
+
+	/*
+	 * byte heap with length-prefixed UTF-8 contact entries.
+	 */
+	private ByteBuffer contactHeap;
+
+	private int contactHeapSize = 0;
+
+	private int contactHeapGarbage = 0;
+
+	/*
+	 * dictionary for name Strings.
+	 */
+	private final Dictionary names = new Dictionary();
+
+	/*
+	 * id index, slot holds {@code row + 1}, 0 marks a free slot.
+	 */
+	private int[] slots;
+
+	private int shift;
+
+	private int rows = 0;
+
+	private int modCount = 0;
+
+	/**
+	 * Default constructor.
+	 */
+	public ColumnarCustomerRepository() {
+		allocate(MIN_ROWS);
+	}
+
+	@Override
+	public synchronized <S extends Customer> S save(S entity) {
+		if (entity != null) {
+			if (entity.getId() < 0) {
+				throw new IllegalArgumentException("Customer id must be assigned (>= 0).");
+			}
+			int slot = slotOf(entity.getId());
+			int row = slots[slot] - 1;
+			if (row < 0) {
+				if (rows == ids.capacity()) {
+					grow(rows * 2);
+				}
+				row = rows++;
+				ids.put(row, entity.getId());
+				contactLengths.put(row, 0);
+				insertSlot(entity.getId(), row);
+			}
+			lastNames.put(row, names.encode(entity.getLastName()));
+			firstNames.put(row, names.encode(entity.getFirstName()));
+			statuses.put(row, (byte) entity.getStatus().ordinal());
+			writeContacts(row, entity.getContacts());
+			modCount++;
+			return entity;
+		} else {
+			throw new IllegalArgumentException("Customer cannot be null.");
+		}
+	}
+
+	@Override
+	public synchronized <S extends Customer> Iterable<S> saveAll(Iterable<S> entities) {
+		if (entities != null) {
+			for (S e : entities) {
+				if (e != null) {
+					save(e);
+				} else {
+					throw new IllegalArgumentException();
+				}
+			}
+			return entities;
+		} else {
+			throw new IllegalArgumentException("List of Customers cannot be null.");
+		}
+	}
+
+	@Override
+	public synchronized boolean existsById(Long id) {
+		if (id != null) {
+			return slots[slotOf(id)] != 0;
+		} else {
+			throw new IllegalArgumentException("Id can not be null.");
+		}
+	}
+
+	@Override
+	public synchronized Optional<Customer> findById(Long id) {
+		if (id != null) {
+			int row = slots[slotOf(id)] - 1;
+			return row < 0 ? Optional.empty() : Optional.of(materialize(row));
+		} else {
+			throw new IllegalArgumentException("Id can not be null.");
+		}
+	}
+
+	/**
+	 * Return all customers. Customer objects are materialized one at a time as
+	 * the iteration advances. Iterators are fail-fast, they throw
+	 * ConcurrentModificationException when the repository is modified during
+	 * iteration.
+	 */
+	@Override
+	public Iterable<Customer> findAll() {
+		return () -> new Iterator<Customer>() {
+			private int expectedModCount;
+			private int row = 0;
+
+			{
+				synchronized (ColumnarCustomerRepository.this) {
+					expectedModCount = modCount;
+				}
+			}
+
+			@Override
+			public boolean hasNext() {
+				synchronized (ColumnarCustomerRepository.this) {
+					return row < rows;
+				}
+			}
+
+			@Override
+			public Customer next() {
+				synchronized (ColumnarCustomerRepository.this) {
+					if (modCount != expectedModCount)
+						throw new ConcurrentModificationException();
+					if (row >= rows)
+						throw new NoSuchElementException();
+					return materialize(row++);
+				}
+			}
+		};
+	}
+
+	@Override
+	public synchronized Iterable<Customer> findAllById(Iterable<Long> ids) {
+		if (ids != null) {
+			List<Customer> hits = new ArrayList<Customer>();
+			for (Long id : ids) {
+				findById(id).ifPresent(hits::add);
+			}
+			return hits;
+		} else {
+			throw new IllegalArgumentException("Ids can not be null.");
+		}
+	}
+
+	@Override
+	public synchronized long count() {
+		return rows;
+	}
+
+	@Override
+	public synchronized void deleteById(Long id) {
+		if (id != null) {
+			int slot = slotOf(id);
+			if (slots[slot] != 0) {
+				deleteRow(slot);
+			}
+		} else {
+			throw new IllegalArgumentException("Id cannot be null.");
+		}
+	}
+
+	@Override
+	public synchronized void delete(Customer entity) {
+		if (entity != null) {
+			deleteById(entity.getId());
+		} else {
+			throw new IllegalArgumentException("Customer cannot be null.");
+		}
+	}
+
+	@Override
+	public synchronized void deleteAllById(Iterable<? extends Long> ids) {
+		if (ids != null) {
+			for (Long id : ids) {
+				deleteById(id);
+			}
+		} else {
+			throw new IllegalArgumentException("Ids cannot be null.");
+		}
+	}
+
+	@Override
+	public synchronized void deleteAll(Iterable<? extends Customer> entities) {
+		if (entities != null) {
+			for (Customer c : entities) {
+				delete(c);
+			}
+		} else {
+			throw new IllegalArgumentException("Ids cannot be null.");
+		}
+	}
+
+	@Override
+	public synchronized void deleteAll() {
+		allocate(MIN_ROWS);
+		names.clear();
+		rows = 0;
+		modCount++;
+	}
+
+	/**
+	 * Return number of bytes allocated outside the Java heap for columns and the
+	 * contact heap.
+	 *
+	 * @return number of allocated off-heap bytes.
+	 */
+	public synchronized long offHeapBytes() {
+		long perRow = Long.BYTES + 4 * Integer.BYTES + 1;
+		return perRow * ids.capacity() + contactHeap.capacity();
+	}
+
+	/*
+	 * private methods
+	 */
+
+	private Customer materialize(int row) {
+		Customer c = new Customer().setId(ids.get(row))
+				.setName(names.decode(firstNames.get(row)), names.decode(lastNames.get(row)))
+				.setStatus(STATUS[statuses.get(row)]);
+		int pos = contactOffsets.get(row);
+		int end = pos + contactLengths.get(row);
+		while (pos < end) {
+			int len = contactHeap.getInt(pos);
+			byte[] bytes = new byte[len];
+			contactHeap.get(pos + Integer.BYTES, bytes);
+			c.addContact(new String(bytes, StandardCharsets.UTF_8));
+			pos += Integer.BYTES + len;
+		}
+		return c;
+	}
+
+	private void writeContacts(int row, Iterable<String> contacts) {
+		List<byte[]> encoded = new ArrayList<byte[]>();
+		int length = 0;
+		for (String contact : contacts) {
+			byte[] bytes = contact.getBytes(StandardCharsets.UTF_8);
+			encoded.add(bytes);
+			length += Integer.BYTES + bytes.length;
+		}
+		int oldLength = contactLengths.get(row);
+		int pos;
+		if (length <= oldLength) {
+			// overwrite entry in place
+			pos = contactOffsets.get(row);
+			contactHeapGarbage += oldLength - length;
+		} else {
+			// entry does not fit into old place, append at end of heap
+			if (contactHeapSize + length > contactHeap.capacity()) {
+				compactContactHeap(length);
+			}
+			pos = contactHeapSize;
+			contactHeapSize += length;
+			contactHeapGarbage += oldLength;
+		}
+		contactOffsets.put(row, pos);
+		contactLengths.put(row, length);
+		for (byte[] bytes : encoded) {
+			contactHeap.putInt(pos, bytes.length);
+			contactHeap.put(pos + Integer.BYTES, bytes);
+			pos += Integer.BYTES + bytes.length;
+		}
+	}
+
+	/**
+	 * Remove garbage from the contact heap and grow it to hold {@code extra}
+	 * more bytes.
+	 */
+	private void compactContactHeap(int extra) {
+		int live = contactHeapSize - contactHeapGarbage;
+		long needed = (long) live + extra;
+		if (needed > Integer.MAX_VALUE) {
+			throw new IllegalStateException("contact heap exceeds 2GB.");
+		}
+		int capacity = contactHeap.capacity();
+		while (capacity < needed * 2 && capacity < Integer.MAX_VALUE / 2) {
+			capacity *= 2;
+		}
+		ByteBuffer heap = ByteBuffer.allocateDirect(Math.max(capacity, (int) needed));
+		int pos = 0;
+		for (int row = 0; row < rows; row++) {
+			int len = contactLengths.get(row);
+			heap.put(pos, contactHeap, contactOffsets.get(row), len);
+			contactOffsets.put(row, pos);
+			pos += len;
+		}
+		contactHeap = heap;
+		contactHeapSize = pos;
+		contactHeapGarbage = 0;
+	}
+
+	private void deleteRow(int slot) {
+		int row = slots[slot] - 1;
+		removeSlot(slot);
+		contactHeapGarbage += contactLengths.get(row);
+		int last = --rows;
+		if (row != last) {
+			// move last row into the gap and re-point its index slot
+			ids.put(row, ids.get(last));
+			lastNames.put(row, lastNames.get(last));
+			firstNames.put(row, firstNames.get(last));
+			statuses.put(row, statuses.get(last));
+			contactOffsets.put(row, contactOffsets.get(last));
+			contactLengths.put(row, contactLengths.get(last));
+			slots[slotOf(ids.get(row))] = row + 1;
+		}
+		modCount++;
+	}
+
+	private int slotOf(long id) {
+		int mask = slots.length - 1;
+		int i = home(id);
+		while (slots[i] != 0 && ids.get(slots[i] - 1) != id) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private int home(long id) {
+		return (int) ((id * PHI) >>> shift);
+	}
+
+	private void insertSlot(long id, int row) {
+		if (rows * 2 > slots.length) {
+			rehash(slots.length * 2);
+		}
+		slots[slotOf(id)] = row + 1;
+	}
+
+	private void removeSlot(int i) {
+		// backward-shift deletion, see LongHashMap
+		int mask = slots.length - 1;
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (slots[j] == 0)
+				break;
+			int h = home(ids.get(slots[j] - 1));
+			boolean homeInRange = i <= j ? (i < h && h <= j) : (i < h || h <= j);
+			if (!homeInRange) {
+				slots[i] = slots[j];
+				i = j;
+			}
+		}
+		slots[i] = 0;
+	}
+
+	private void rehash(int capacity) {
+		int[] old = slots;
+		slots = new int[capacity];
+		shift = 64 - Integer.numberOfTrailingZeros(capacity);
+		for (int s : old) {
+			if (s != 0) {
+				slots[slotOf(ids.get(s - 1))] = s;
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		ids = ByteBuffer.allocateDirect(capacity * Long.BYTES).asLongBuffer();
+		lastNames = ByteBuffer.allocateDirect(capacity * Integer.BYTES).asIntBuffer();
+		firstNames = ByteBuffer.allocateDirect(capacity * Integer.BYTES).asIntBuffer();
+		statuses = ByteBuffer.allocateDirect(capacity);
+		contactOffsets = ByteBuffer.allocateDirect(capacity * Integer.BYTES).asIntBuffer();
+		contactLengths = ByteBuffer.allocateDirect(capacity * Integer.BYTES).asIntBuffer();
+		contactHeap = ByteBuffer.allocateDirect(capacity * 32);
+		contactHeapSize = 0;
+		contactHeapGarbage = 0;
+		slots = new int[capacity * 2];
+		shift = 64 - Integer.numberOfTrailingZeros(slots.length);
+	}
+
+	private void grow(int capacity) {
+		ids = copy(ByteBuffer.allocateDirect(capacity * Long.BYTES).asLongBuffer(), ids);
+		lastNames = copy(ByteBuffer.allocateDirect(capacity * Integer.BYTES).asIntBuffer(), lastNames);
+		firstNames = copy(ByteBuffer.allocateDirect(capacity * Integer.BYTES).asIntBuffer(), firstNames);
+		statuses = ByteBuffer.allocateDirect(capacity).put(0, statuses, 0, rows);
+		contactOffsets = copy(ByteBuffer.allocateDirect(capacity * Integer.BYTES).asIntBuffer(), contactOffsets);
+		contactLengths = copy(ByteBuffer.allocateDirect(capacity * Integer.BYTES).asIntBuffer(), contactLengths);
+	}
+
+	private LongBuffer copy(LongBuffer to, LongBuffer from) {
+		return to.put(0, from, 0, rows);
+	}
+
+	private IntBuffer copy(IntBuffer to, IntBuffer from) {
+		return to.put(0, from, 0, rows);
+	}
+
+	/**
+	 * Dictionary that maps Strings to dense {@code int} codes.
+	 */
+	private static class Dictionary {
+		private final HashMap<String, Integer> codes = new HashMap<String, Integer>();
+		private final ArrayList<String> values = new ArrayList<String>();
+
+		int encode(String value) {
+			Integer code = codes.get(value);
+			if (code == null) {
+				code = values.size();
+				values.add(value);
+				codes.put(value, code);
+			}
+			return code;
+		}
+
+		String decode(int code) {
+			return values.get(code);
+		}
+
+		void clear() {
+			codes.clear();
+			values.clear();
+		}
+	}
+
+}
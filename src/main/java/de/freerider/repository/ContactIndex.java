@@ -0,0 +1,178 @@
+package de.freerider.repository;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.freerider.datamodel.Customer;
+
+/**
+ * Inverted index from normalized contacts to the ids of customers holding the
+ * contact. Lookups are hash lookups in {@code O(1)}.
+ *
+ * Contacts are normalized such that different spellings of the same contact
+ * match: emails (contacts with '@') are lowercased, phone numbers (contacts
+ * with digits and only phone punctuation {@code + - ( ) / .} and spaces) are
+ * reduced to their digits, other contacts are lowercased. The normalized
+ * contacts of each indexed id are kept to remove entries independently of the
+ * current contacts of the customer object. Single added or removed contacts
+ * are indexed in {@code O(1)}, re-indexing all contacts takes {@code O(k)}.
+ *
+ * Updates of the same id must be serialized by the caller (the repository
+ * holds the stripe write lock of the id), lookups run concurrently.
+ */
+
+final class ContactIndex {
+
+	private final ConcurrentHashMap<String, Set<Long>> index = new ConcurrentHashMap<String, Set<Long>>();
+
+	/*
+	 * normalized contacts of each id with number of contacts normalized to the
+	 * key, a count map is only accessed by the updater of its id.
+	 */
+	private final ConcurrentHashMap<Long, Map<String, Integer>> keys = new ConcurrentHashMap<Long, Map<String, Integer>>();
+
+	/**
+	 * Index contacts of customer, replaces previous entries of the customer's id.
+	 * Takes O(k) for k contacts.
+	 *
+	 * @param c customer to index.
+	 */
+	void put(Customer c) {
+		long id = c.getId();
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (String contact : c.getContacts()) {
+			String key = normalize(contact);
+			if (counts.merge(key, 1, Integer::sum) == 1) {
+				link(key, id);
+			}
+		}
+		Map<String, Integer> old = counts.isEmpty() ? keys.remove(id) : keys.put(id, counts);
+		// unlink contacts no longer held, kept contacts remain visible to lookups
+		if (old != null) {
+			for (String key : old.keySet()) {
+				if (!counts.containsKey(key)) {
+					unlink(key, id);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Index contact added to customer in O(1).
+	 *
+	 * @param c       customer holding the contact.
+	 * @param contact added contact.
+	 */
+	void add(Customer c, String contact) {
+		String key = normalize(contact);
+		Map<String, Integer> counts = keys.computeIfAbsent(c.getId(), id -> new HashMap<String, Integer>());
+		if (counts.merge(key, 1, Integer::sum) == 1) {
+			link(key, c.getId());
+		}
+	}
+
+	/**
+	 * Remove index entry of contact removed from customer in O(1), the entry is
+	 * kept while the customer holds another contact with the same normalized
+	 * form.
+	 *
+	 * @param c       customer that held the contact.
+	 * @param contact removed contact.
+	 */
+	void remove(Customer c, String contact) {
+		String key = normalize(contact);
+		Map<String, Integer> counts = keys.get(c.getId());
+		if (counts != null && counts.containsKey(key)) {
+			if (counts.merge(key, -1, Integer::sum) == 0) {
+				counts.remove(key);
+				unlink(key, c.getId());
+			}
+			if (counts.isEmpty()) {
+				keys.remove(c.getId());
+			}
+		}
+	}
+
+	/**
+	 * Remove entries of id.
+	 *
+	 * @param id id of customer to remove.
+	 */
+	void remove(long id) {
+		Map<String, Integer> old = keys.remove(id);
+		if (old != null) {
+			for (String key : old.keySet()) {
+				unlink(key, id);
+			}
+		}
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	void clear() {
+		index.clear();
+		keys.clear();
+	}
+
+	/**
+	 * Find ids of customers holding contact.
+	 *
+	 * @param contact contact, normalized before lookup.
+	 * @return unmodifiable set of ids, empty if no customer holds the contact.
+	 */
+	Set<Long> find(String contact) {
+		Set<Long> ids = index.get(normalize(contact));
+		return ids != null ? Collections.unmodifiableSet(ids) : Collections.emptySet();
+	}
+
+	/**
+	 * Normalize contact for indexing and lookup.
+	 *
+	 * @param contact contact to normalize.
+	 * @return normalized contact.
+	 */
+	static String normalize(String contact) {
+		String s = contact.trim();
+		if (s.indexOf('@') < 0) {
+			StringBuilder digits = new StringBuilder(s.length());
+			boolean phone = true;
+			for (int i = 0; i < s.length() && phone; i++) {
+				char ch = s.charAt(i);
+				if (ch >= '0' && ch <= '9') {
+					digits.append(ch);
+				} else {
+					phone = " +-()/.".indexOf(ch) >= 0;
+				}
+			}
+			if (phone && digits.length() > 0) {
+				return digits.toString();
+			}
+		}
+		return s.toLowerCase(Locale.ROOT);
+	}
+
+	/*
+	 * private methods
+	 */
+
+	private void link(String key, long id) {
+		index.compute(key, (k, ids) -> {
+			ids = ids != null ? ids : ConcurrentHashMap.newKeySet();
+			ids.add(id);
+			return ids;
+		});
+	}
+
+	private void unlink(String key, long id) {
+		index.computeIfPresent(key, (k, ids) -> {
+			ids.remove(id);
+			return ids.isEmpty() ? null : ids;
+		});
+	}
+
+}
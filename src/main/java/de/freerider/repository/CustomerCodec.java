@@ -0,0 +1,120 @@
+package de.freerider.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.freerider.datamodel.Customer;
+
+/**
+ * Binary encoding of Customer objects used by the repository log and
+ * snapshots. Layout (big-endian):
+ *
+ * <pre>
+ * {@code
+ * long   id
+ * byte   status (ordinal)
+ * string lastName
+ * string firstName
+ * int    number of contacts
+ * string contact[]
+ *
+ * string: int length, UTF-8 bytes
+ * }
+ * </pre>
+ */
+
+final class CustomerCodec {
+
+	private static final Customer.Status[] STATUS = Customer.Status.values();
+
+	private CustomerCodec() {
+	}
+
+	/**
+	 * Encode Customer object.
+	 *
+	 * @param c Customer to encode.
+	 * @return encoded bytes.
+	 */
+	static byte[] encode(Customer c) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+			DataOutputStream out = new DataOutputStream(bytes);
+			write(out, c);
+			out.flush();
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // not thrown by in-memory streams
+		}
+	}
+
+	/**
+	 * Write encoded Customer object to output.
+	 *
+	 * @param out output to write to.
+	 * @param c   Customer to encode.
+	 * @throws IOException when output fails.
+	 */
+	static void write(DataOutputStream out, Customer c) throws IOException {
+		out.writeLong(c.getId());
+		out.writeByte(c.getStatus().ordinal());
+		writeString(out, c.getLastName());
+		writeString(out, c.getFirstName());
+		List<String> contacts = new ArrayList<String>(c.contactsCount());
+		c.getContacts().forEach(contacts::add); // one snapshot, count and entries match
+		out.writeInt(contacts.size());
+		for (String contact : contacts) {
+			writeString(out, contact);
+		}
+	}
+
+	/**
+	 * Decode Customer object at the position of the buffer, the position is
+	 * advanced past the encoded object.
+	 *
+	 * @param buf buffer to decode from.
+	 * @return decoded Customer object.
+	 */
+	static Customer decode(ByteBuffer buf) {
+		long id = buf.getLong();
+		Customer.Status status = STATUS[buf.get()];
+		String lastName = readString(buf);
+		String firstName = readString(buf);
+		Customer c = new Customer().setId(id).setName(firstName, lastName).setStatus(status);
+		for (int n = buf.getInt(); n > 0; n--) {
+			c.addContact(readString(buf));
+		}
+		return c;
+	}
+
+	/*
+	 * private methods
+	 */
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+	private static String readString(ByteBuffer buf) {
+		int len = buf.getInt();
+		String s;
+		if (buf.hasArray()) {
+			s = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+		} else {
+			byte[] b = new byte[len];
+			buf.get(buf.position(), b);
+			s = new String(b, StandardCharsets.UTF_8);
+		}
+		buf.position(buf.position() + len);
+		return s;
+	}
+
+}
@@ -0,0 +1,344 @@
+package de.freerider.repository;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import de.freerider.datamodel.Customer;
+
+/**
+ * Append-only write-ahead log of changes made to the customer repository.
+ * Records are collected in a buffer and written to the log file by a flusher
+ * thread that forces written records to disk once per group-commit interval
+ * (group commit). Writers therefore never wait for disk I/O; changes made
+ * within the last interval may be lost on a crash.
+ *
+ * Record layout: {@code int length, int crc32, byte op, payload}, payload is
+ * the encoded Customer (op SAVE), a {@code long} id (op DELETE) or empty (op
+ * DELETE_ALL). A torn or corrupt record at the end of the log is truncated at
+ * replay.
+ *
+ * Log is configured in application.properties, it is disabled by default:
+ *
+ * <pre>
+ * {@code
+ * app.repository.log.enabled = true
+ * app.repository.log.file = data/customers.log
+ * app.repository.log.group-commit-ms = 10
+ * }
+ * </pre>
+ */
+
+@Component
+public class CustomerLog {
+
+	private static final Logger log = LoggerFactory.getLogger(CustomerLog.class);
+
+	/**
+	 * Receiver of replayed log records.
+	 */
+	public interface Replayer {
+
+		void save(Customer c);
+
+		void delete(long id);
+
+		void deleteAll();
+	}
+
+	private static final byte SAVE = 1;
+	private static final byte DELETE = 2;
+	private static final byte DELETE_ALL = 3;
+
+	private static final int HEADER = 2 * Integer.BYTES;
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	@Value("${app.repository.log.enabled:false}")
+	private boolean enabled;
+
+	@Value("${app.repository.log.file:data/customers.log}")
+	private String file;
+
+	@Value("${app.repository.log.group-commit-ms:10}")
+	private long groupCommitMillis;
+
+	private FileChannel channel;
+
+	/*
+	 * records appended but not yet written to the channel, guarded by this.
+	 */
+	private final ByteBuffer pending = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	/*
+	 * records were written to the channel since last force, guarded by this.
+	 */
+	private boolean unforced = false;
+
+	private ScheduledExecutorService flusher;
+
+	/**
+	 * Open log file when log is enabled and start flusher thread.
+	 *
+	 * @throws IOException when log file cannot be opened.
+	 */
+	@PostConstruct
+	public void open() throws IOException {
+		if (enabled) {
+			Path path = Paths.get(file);
+			if (path.getParent() != null) {
+				Files.createDirectories(path.getParent());
+			}
+			channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			channel.position(channel.size());
+			flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "customer-log-flusher");
+				t.setDaemon(true);
+				return t;
+			});
+			flusher.scheduleWithFixedDelay(this::flushQuietly, groupCommitMillis, groupCommitMillis,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Flush pending records and close log file.
+	 *
+	 * @throws IOException when flushing fails.
+	 */
+	@PreDestroy
+	public synchronized void close() throws IOException {
+		if (channel != null) {
+			flusher.shutdown();
+			drain();
+			// force even when a concurrent flush() has taken the unforced records
+			channel.force(false);
+			channel.close();
+			channel = null;
+		}
+	}
+
+	/**
+	 * Return whether log is enabled.
+	 *
+	 * @return true if log is enabled.
+	 */
+	public boolean isEnabled() {
+		return channel != null;
+	}
+
+	/**
+	 * Append SAVE record for Customer object.
+	 *
+	 * @param c saved Customer.
+	 * @throws IllegalArgumentException if record exceeds the maximum record size.
+	 */
+	public void appendSave(Customer c) {
+		appendSave(encodeSave(c));
+	}
+
+	/**
+	 * Encode SAVE record for Customer object such that a change can be validated
+	 * before it is applied and appended after.
+	 *
+	 * @param c Customer to save.
+	 * @return encoded record body, see {@link #appendSave(byte[])}.
+	 * @throws IllegalArgumentException if record exceeds the maximum record size.
+	 */
+	public byte[] encodeSave(Customer c) {
+		byte[] body = CustomerCodec.encode(c);
+		checkLength(body);
+		return body;
+	}
+
+	/**
+	 * Append SAVE record encoded by {@link #encodeSave(Customer)}.
+	 *
+	 * @param body encoded record body.
+	 */
+	public void appendSave(byte[] body) {
+		append(SAVE, body);
+	}
+
+	/**
+	 * Append DELETE record for id.
+	 *
+	 * @param id id of deleted Customer.
+	 */
+	public void appendDelete(long id) {
+		append(DELETE, ByteBuffer.allocate(Long.BYTES).putLong(id).array());
+	}
+
+	/**
+	 * Append DELETE_ALL record.
+	 */
+	public void appendDeleteAll() {
+		append(DELETE_ALL, new byte[0]);
+	}
+
+	/**
+	 * Write pending records to the log file and force them to disk.
+	 *
+	 * @throws IOException when writing fails.
+	 */
+	public void flush() throws IOException {
+		FileChannel c;
+		synchronized (this) {
+			c = channel;
+			if (c == null)
+				return;
+			drain();
+			if (!unforced)
+				return;
+			unforced = false;
+		}
+		try {
+			c.force(false);
+		} catch (ClosedChannelException e) {
+			// closed concurrently, close() has forced the records
+		}
+	}
+
+	/**
+	 * Return position of the end of the log including pending records. Records
+	 * appended later are located after this position.
+	 *
+	 * @return position of the end of the log.
+	 * @throws IOException when the position of the log file cannot be obtained.
+	 */
+	public synchronized long position() throws IOException {
+		return channel.position() + pending.position();
+	}
+
+	/**
+	 * Replay records of the log file in order starting from a position returned
+	 * by {@link #position()}. A torn or corrupt tail is truncated, subsequent
+	 * records are appended after the last valid record.
+	 *
+	 * @param from     log position from which records are replayed.
+	 * @param replayer receiver of replayed records.
+	 * @return number of replayed records.
+	 * @throws IOException when reading the log file fails.
+	 */
+	public synchronized long replay(long from, Replayer replayer) throws IOException {
+		long records = 0;
+		if (from > channel.size()) {
+			log.warn("customer log: log ends before position {}, nothing to replay.", from);
+			from = channel.size();
+		}
+		long valid = from;
+		channel.position(from);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+		CRC32 crc = new CRC32();
+		try {
+			while (true) {
+				int length = in.readInt();
+				int checksum = in.readInt();
+				if (length < 1 || length > BUFFER_SIZE) {
+					break; // corrupt length
+				}
+				byte[] payload = new byte[length];
+				in.readFully(payload);
+				crc.reset();
+				crc.update(payload);
+				if ((int) crc.getValue() != checksum) {
+					break; // corrupt record
+				}
+				ByteBuffer buf = ByteBuffer.wrap(payload);
+				switch (buf.get()) {
+				case SAVE:
+					replayer.save(CustomerCodec.decode(buf));
+					break;
+				case DELETE:
+					replayer.delete(buf.getLong());
+					break;
+				case DELETE_ALL:
+					replayer.deleteAll();
+					break;
+				}
+				records++;
+				valid += HEADER + length;
+			}
+		} catch (EOFException e) {
+			// end of log, last record may be torn
+		}
+		if (valid < channel.size()) {
+			log.warn("customer log: truncating {} bytes of torn tail.", channel.size() - valid);
+			channel.truncate(valid);
+		}
+		channel.position(valid);
+		return records;
+	}
+
+	/*
+	 * private methods
+	 */
+
+	private void append(byte op, byte[] body) {
+		checkLength(body);
+		int length = 1 + body.length;
+		CRC32 crc = new CRC32();
+		crc.update(op);
+		crc.update(body);
+		synchronized (this) {
+			try {
+				if (pending.remaining() < HEADER + length) {
+					drain();
+				}
+				pending.putInt(length).putInt((int) crc.getValue()).put(op).put(body);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private static void checkLength(byte[] body) {
+		if (HEADER + 1 + body.length > BUFFER_SIZE) {
+			throw new IllegalArgumentException("log record exceeds " + BUFFER_SIZE + " bytes.");
+		}
+	}
+
+	/**
+	 * Write pending records to the channel, caller holds lock.
+	 */
+	private void drain() throws IOException {
+		pending.flip();
+		unforced |= pending.hasRemaining();
+		while (pending.hasRemaining()) {
+			channel.write(pending);
+		}
+		pending.clear();
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (IOException e) {
+			log.error("customer log: flush failed", e);
+		}
+	}
+
+}
@@ -1,22 +1,265 @@
 package de.freerider.repository;
 
-import java.util.HashSet;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import de.freerider.datamodel.Customer;
 
+/**
+ * Thread-safe repository of Customer entities. Customers are indexed by their
+ * primitive long id in hash tables that are split into lock stripes. Each stripe
+ * is guarded by its own read-write lock, such that concurrent requests on
+ * different customers do not contend. Operations that span the whole
+ * repository acquire stripe locks in ascending order.
+ *
+ * Secondary indexes on case-folded last- and first names support prefix
+ * searches, an inverted index on normalized contacts supports reverse lookups
+ * of customers by email or phone number, status partitions support counts and
+ * queries by status. Stored customers notify the repository of name, contact
+ * and status changes, indexes are updated on every save, delete and change.
+ *
+ * When the CustomerLog is enabled, every change is appended to the log while
+ * the affected stripe is locked, including changes made through setters of
+ * stored customers. Records of changes made by repository methods are encoded
+ * before the change is applied, a change whose record exceeds the maximum
+ * record size is rejected and not applied. When CustomerSnapshot is enabled, snapshots
+ * are written periodically and at shutdown. At startup, the repository is
+ * recovered from the latest snapshot and the log tail after the snapshot.
+ */
+
 @Component("customerRepository")
 public class CustomerRepository implements CrudRepository<Customer, Long> {
 
-	// Hashset of Customer entities as database
-	private HashSet<Customer> customerSet = new HashSet<Customer>();
+	private static final Logger log = LoggerFactory.getLogger(CustomerRepository.class);
+
+	/**
+	 * Outcome of an update of a stored customer.
+	 */
+	public enum UpdateResult {
+		UPDATED, UNCHANGED, NOT_FOUND
+	};
+
+	/*
+	 * number of lock stripes, must be a power of 2.
+	 */
+	private static final int STRIPES = 64;
+
+	// Customer entities as database, indexed by primitive long id
+	@SuppressWarnings("unchecked")
+	private final LongHashMap<Customer>[] customerTables = (LongHashMap<Customer>[]) new LongHashMap<?>[STRIPES];
+
+	private final ReentrantReadWriteLock[] locks = new ReentrantReadWriteLock[STRIPES];
+
+	private final AtomicLong count = new AtomicLong();
+
+	/*
+	 * per stripe: version incremented on every insert, replace, removal and
+	 * change of a stored entity (guarded by the stripe lock) and immutable copy
+	 * of the stripe's entities taken at a version, reused by findAll() while
+	 * the stripe is unchanged.
+	 */
+	private final long[] stripeVersions = new long[STRIPES];
+
+	private final StripeCopy[] stripeCopies = new StripeCopy[STRIPES];
+
+	/*
+	 * number of atomic batches that write all stripes (insertAll, deleteAll),
+	 * incremented while all stripes are write-locked.
+	 */
+	private volatile long batches = 0;
+
+	/*
+	 * attempts to take a snapshot stripe by stripe before all stripes are locked.
+	 */
+	private static final int SNAPSHOT_ATTEMPTS = 3;
+
+	/*
+	 * ordered id index for paging, maintained under stripe write locks.
+	 */
+	private final ConcurrentSkipListMap<Long, Customer> orderedIndex = new ConcurrentSkipListMap<Long, Customer>();
+
+	/*
+	 * secondary name indexes, maintained under stripe write locks.
+	 */
+	private final NameIndex lastNameIndex = new NameIndex();
+
+	private final NameIndex firstNameIndex = new NameIndex();
+
+	/*
+	 * inverted index of normalized contacts, maintained under stripe write locks.
+	 */
+	private final ContactIndex contactIndex = new ContactIndex();
+
+	/*
+	 * status partitions with counts, maintained under stripe write locks.
+	 */
+	private final StatusIndex statusIndex = new StatusIndex();
+
+	/*
+	 * re-indexes stored customers when their names, contacts or status change.
+	 */
+	private final Customer.Listener indexer = new Customer.Listener() {
+		@Override
+		public void nameChanged(Customer c) {
+			reindex(c, CustomerRepository.this::indexNames);
+		}
+
+		@Override
+		public void contactsChanged(Customer c) {
+			reindex(c, contactIndex::put);
+		}
+
+		@Override
+		public void contactAdded(Customer c, String contact) {
+			reindex(c, x -> contactIndex.add(x, contact));
+		}
+
+		@Override
+		public void contactRemoved(Customer c, String contact) {
+			reindex(c, x -> contactIndex.remove(x, contact));
+		}
+
+		@Override
+		public void statusChanged(Customer c) {
+			reindex(c, statusIndex::put);
+		}
+	};
+
+	@Autowired(required = false) // not present when created outside of Spring
+	private CustomerLog customerLog;
+
+	@Autowired(required = false)
+	private CustomerSnapshot customerSnapshot;
+
+	@Autowired(required = false)
+	private IdAllocator idAllocator = new IdAllocator();
+
+	/*
+	 * log position of last snapshot, -1 if no snapshot was taken or loaded.
+	 */
+	private long snapshotPosition = -1;
+
+	/**
+	 * Default constructor.
+	 */
+	public CustomerRepository() {
+		for (int i = 0; i < STRIPES; i++) {
+			customerTables[i] = new LongHashMap<Customer>();
+			locks[i] = new ReentrantReadWriteLock();
+		}
+	}
+
+	/**
+	 * Recover repository content from the latest snapshot and the CustomerLog,
+	 * if enabled.
+	 *
+	 * @throws IOException when reading the snapshot or the log fails.
+	 */
+	@PostConstruct
+	public void recover() throws IOException {
+		long t0 = System.currentTimeMillis();
+		long from = 0;
+		if (snapshots()) {
+			from = customerSnapshot.load(this::put);
+			snapshotPosition = from;
+			log.info("repository<Customer> loaded {} entries from snapshot in {} ms", count(),
+					System.currentTimeMillis() - t0);
+		}
+		if (logging()) {
+			long records = customerLog.replay(from, new CustomerLog.Replayer() {
+				@Override
+				public void save(Customer c) {
+					put(c);
+				}
+
+				@Override
+				public void delete(long id) {
+					remove(id);
+				}
+
+				@Override
+				public void deleteAll() {
+					clear();
+				}
+			});
+			log.info("repository<Customer> recovered {} entries from {} log records in {} ms", count(), records,
+					System.currentTimeMillis() - t0);
+		}
+	}
+
+	/**
+	 * Write snapshot of the repository, if enabled and the repository has
+	 * changed since the last snapshot. Customers and the log position are
+	 * captured while all stripes are read-locked, encoding and writing the
+	 * snapshot happens without locks.
+	 *
+	 * @throws IOException when writing the snapshot fails.
+	 */
+	@Scheduled(fixedDelayString = "${app.repository.snapshot.interval-ms:300000}", //
+			initialDelayString = "${app.repository.snapshot.interval-ms:300000}")
+	@PreDestroy
+	public void snapshot() throws IOException {
+		if (snapshots()) {
+			long t0 = System.currentTimeMillis();
+			Iterable<Customer> customers;
+			long position;
+			lockAll(false);
+			try {
+				position = logging() ? customerLog.position() : 0;
+				if (logging() && position == snapshotPosition) {
+					return; // no change since last snapshot
+				}
+				customers = collect(false);
+			} finally {
+				unlockAll(false);
+			}
+			long n = customerSnapshot.write(customers, position);
+			snapshotPosition = position;
+			log.info("repository<Customer> snapshot of {} entries written in {} ms", n,
+					System.currentTimeMillis() - t0);
+		}
+	}
 
 	@Override
 	public <S extends Customer> S save(S entity) {
 		if (entity != null) {
-			customerSet.add(entity);
+			if (entity.getId() < 0) {
+				throw new IllegalArgumentException("Customer id must be assigned (>= 0).");
+			}
+			if (entity.isReadOnly()) {
+				throw new IllegalArgumentException("Customer is a read-only copy.");
+			}
+			int s = stripe(entity.getId());
+			locks[s].writeLock().lock();
+			try {
+				// encode (and validate) log record before the entity is stored
+				byte[] record = logging() ? customerLog.encodeSave(entity) : null;
+				put(entity);
+				if (record != null) {
+					customerLog.appendSave(record);
+				}
+			} finally {
+				locks[s].writeLock().unlock();
+			}
 			return entity;
 		} else {
 			throw new IllegalArgumentException("Customer cannot be null.");
@@ -39,17 +282,132 @@ public class CustomerRepository implements CrudRepository<Customer, Long> {
 		}
 	}
 
+	/**
+	 * Insert new entities in one pass. Entities whose id is already used, either
+	 * in the repository or by a preceding entity of the same batch, are not
+	 * inserted and are returned as conflicts. All other entities are inserted
+	 * atomically: the repository is write-locked for the whole batch, other
+	 * threads observe either none or all of them.
+	 *
+	 * @param entities entities to insert, must not be {@literal null} nor
+	 *                 contain {@literal null} or entities without id.
+	 * @return entities that were not inserted due to id conflicts, empty if all
+	 *         entities were inserted.
+	 * @throws IllegalArgumentException in case the given {@literal entities} or
+	 *                                  one of its entities is {@literal null},
+	 *                                  has no id, is a read-only copy or exceeds
+	 *                                  the maximum log record size; nothing is
+	 *                                  inserted then.
+	 */
+	public <S extends Customer> List<S> insertAll(Iterable<S> entities) {
+		if (entities == null) {
+			throw new IllegalArgumentException("List of Customers cannot be null.");
+		}
+		// validate entities and encode log records before anything is inserted
+		List<byte[]> records = new ArrayList<byte[]>();
+		for (S e : entities) {
+			if (e == null || e.getId() < 0) {
+				throw new IllegalArgumentException("Customer cannot be null and must have id (>= 0).");
+			}
+			if (e.isReadOnly()) {
+				throw new IllegalArgumentException("Customer is a read-only copy.");
+			}
+			records.add(logging() ? customerLog.encodeSave(e) : null);
+		}
+		List<S> conflicts = new ArrayList<S>();
+		lockAll(true);
+		try {
+			batches++;
+			int i = 0;
+			for (S e : entities) {
+				byte[] record = records.get(i++);
+				if (customerTables[stripe(e.getId())].containsKey(e.getId())) {
+					conflicts.add(e);
+				} else {
+					put(e);
+					if (record != null) {
+						customerLog.appendSave(record);
+					}
+				}
+			}
+		} finally {
+			unlockAll(true);
+		}
+		return conflicts;
+	}
+
+	/**
+	 * Merge change into the stored customer with the same id: the name is
+	 * replaced, contacts of the change that are not yet stored are added. The
+	 * stored customer is looked up by id in O(1), indexes are updated and the
+	 * change is logged only if the customer was actually modified.
+	 *
+	 * @param change customer with id of stored customer, name and new contacts.
+	 * @return outcome of update.
+	 * @throws IllegalArgumentException in case the given {@literal change} is
+	 *                                  {@literal null} or the merged customer
+	 *                                  exceeds the maximum log record size; the
+	 *                                  stored customer is not changed then.
+	 */
+	public UpdateResult update(Customer change) {
+		if (change == null) {
+			throw new IllegalArgumentException("Customer cannot be null.");
+		}
+		int s = stripe(change.getId());
+		locks[s].writeLock().lock();
+		try {
+			Customer stored = customerTables[s].get(change.getId());
+			if (stored == null) {
+				return UpdateResult.NOT_FOUND;
+			}
+			// encode (and validate) log record of merged customer before the change
+			byte[] record = logging() ? customerLog.encodeSave(merge(copy(stored), change)) : null;
+			long version = stored.getVersion();
+			merge(stored, change);
+			if (stored.getVersion() == version) {
+				return UpdateResult.UNCHANGED;
+			}
+			if (record != null) {
+				customerLog.appendSave(record);
+			}
+			return UpdateResult.UPDATED;
+		} finally {
+			locks[s].writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Merge changes into stored customers in one pass, see
+	 * {@link #update(Customer)}. Each change is applied under the lock of its
+	 * stripe, the batch as a whole is not atomic.
+	 *
+	 * @param changes changes to apply, must not be {@literal null} nor contain
+	 *                {@literal null}.
+	 * @return outcome for each change, in order of changes.
+	 * @throws IllegalArgumentException in case the given {@literal changes} or
+	 *                                  one of its elements is {@literal null};
+	 *                                  nothing is updated then.
+	 */
+	public List<UpdateResult> updateAll(List<? extends Customer> changes) {
+		if (changes == null) {
+			throw new IllegalArgumentException("List of Customers cannot be null.");
+		}
+		for (Customer change : changes) {
+			if (change == null) {
+				throw new IllegalArgumentException("Customer cannot be null.");
+			}
+		}
+		List<UpdateResult> results = new ArrayList<UpdateResult>(changes.size());
+		for (Customer change : changes) {
+			results.add(update(change));
+		}
+		return results;
+	}
+
 	@Override
 	public boolean existsById(Long id) {
 		if (id != null) {
-			boolean returnBoolean = false;
-			for (Customer c : customerSet) {
-				if (c.getId() == id) {
-					returnBoolean = true;
-					break; // stop after first hit
-				}
-			}
-			return returnBoolean;
+			return get(id) != null;
 		} else {
 			throw new IllegalArgumentException("Id can not be null.");
 		}
@@ -57,33 +415,188 @@ public class CustomerRepository implements CrudRepository<Customer, Long> {
 
 	@Override
 	public Optional<Customer> findById(Long id) {
-		Optional<Customer> opt = Optional.empty();
 		if (id != null) {
-			for (Customer c : customerSet) {
-				if (c.getId() == id) {
-					opt = Optional.of(c);
-					break; // stop after first hit
-				}
-			}
-			return opt;
+			return Optional.ofNullable(get(id));
 		} else {
 			throw new IllegalArgumentException("Id can not be null.");
 		}
 	}
 
+	/**
+	 * Return snapshot of all customers. The snapshot is not affected by later
+	 * changes and can safely be iterated while other threads modify the
+	 * repository. The returned list is unmodifiable and holds read-only copies
+	 * of the customers (see {@link Customer#readOnlyCopy()}) that freeze their
+	 * state at the time their stripe was copied.
+	 *
+	 * Snapshots are composed of immutable per-stripe copies that are shared
+	 * between snapshots, only stripes changed since the previous snapshot are
+	 * copied again. Each stripe is copied under its own read lock, a writer is
+	 * blocked only while the stripe it writes is copied. A snapshot contains all
+	 * or none of the changes of an atomic batch ({@link #insertAll(Iterable)},
+	 * {@link #deleteAll()}): a snapshot overlapping such a batch is taken again
+	 * and, after repeated overlaps, taken while all stripes are read-locked.
+	 * Changes of batches that are not atomic as a whole (e.g.
+	 * {@link #updateAll(List)}) may be contained in part.
+	 */
 	@Override
 	public Iterable<Customer> findAll() {
-		return customerSet;
+		for (int attempt = 0; attempt < SNAPSHOT_ATTEMPTS; attempt++) {
+			long before = batches;
+			List<Customer> snapshot = collect(true);
+			if (batches == before) {
+				return snapshot;
+			}
+		}
+		lockAll(false);
+		try {
+			return collect(false);
+		} finally {
+			unlockAll(false);
+		}
+	}
+
+	/**
+	 * Return page of customers in ascending id order (keyset paging). The page
+	 * starts with the first customer with an id greater than cursor
+	 * {@code after}, the id of the last customer of a page is the cursor for the
+	 * next page. A page fetch takes {@code O(limit * log n)}.
+	 *
+	 * @param after cursor, id after which the page starts, -1 for first page.
+	 * @param limit maximum number of customers in the page, must be {@code > 0}.
+	 * @return customers of the page, empty if no customers follow the cursor.
+	 * @throws IllegalArgumentException if {@literal limit} is not positive.
+	 */
+	public List<Customer> findPage(long after, int limit) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("Limit must be > 0.");
+		}
+		List<Customer> page = new ArrayList<Customer>(Math.min(limit, 1024));
+		for (Customer c : orderedIndex.tailMap(after, false).values()) {
+			if (page.size() == limit)
+				break;
+			page.add(c);
+		}
+		return page;
+	}
+
+	/**
+	 * Test whether a customer with an id greater than cursor {@code after}
+	 * exists, i.e. whether a page following the cursor is not empty.
+	 *
+	 * @param after cursor, id after which the next page starts.
+	 * @return true if customers follow the cursor.
+	 */
+	public boolean hasPageAfter(long after) {
+		return orderedIndex.higherKey(after) != null;
+	}
+
+	/**
+	 * Find customers whose lastName starts with prefix, case-insensitive, in
+	 * ascending lastName order. Takes {@code O(log n + limit)}.
+	 *
+	 * @param prefix lastName prefix, "" matches all customers.
+	 * @param limit  maximum number of customers returned, must be {@code > 0}.
+	 * @return customers with matching lastName.
+	 * @throws IllegalArgumentException if {@literal prefix} is {@literal null}
+	 *                                  or {@literal limit} is not positive.
+	 */
+	public List<Customer> findByLastNamePrefix(String prefix, int limit) {
+		return findByPrefix(lastNameIndex, prefix, limit);
+	}
+
+	/**
+	 * Find customers whose firstName starts with prefix, case-insensitive, in
+	 * ascending firstName order. Takes {@code O(log n + limit)}.
+	 *
+	 * @param prefix firstName prefix, "" matches all customers.
+	 * @param limit  maximum number of customers returned, must be {@code > 0}.
+	 * @return customers with matching firstName.
+	 * @throws IllegalArgumentException if {@literal prefix} is {@literal null}
+	 *                                  or {@literal limit} is not positive.
+	 */
+	public List<Customer> findByFirstNamePrefix(String prefix, int limit) {
+		return findByPrefix(firstNameIndex, prefix, limit);
+	}
+
+	/**
+	 * Find customers holding contact, e.g. an email or phone number. Contacts
+	 * are compared normalized: emails case-insensitive, phone numbers by their
+	 * digits only. Takes {@code O(1)} plus the number of customers found.
+	 *
+	 * @param contact contact to look up.
+	 * @return customers holding the contact in ascending id order, empty if none.
+	 * @throws IllegalArgumentException if {@literal contact} is {@literal null}.
+	 */
+	public List<Customer> findByContact(String contact) {
+		if (contact == null) {
+			throw new IllegalArgumentException("Contact cannot be null.");
+		}
+		List<Customer> hits = new ArrayList<Customer>();
+		for (long id : contactIndex.find(contact)) {
+			Customer c = get(id);
+			if (c != null) {
+				hits.add(c);
+			}
+		}
+		hits.sort((c1, c2) -> Long.compare(c1.getId(), c2.getId()));
+		return hits;
+	}
+
+	/**
+	 * Return number of customers with status in constant time.
+	 *
+	 * @param status status to count.
+	 * @return number of customers with status.
+	 * @throws IllegalArgumentException if {@literal status} is {@literal null}.
+	 */
+	public long countByStatus(Customer.Status status) {
+		if (status == null) {
+			throw new IllegalArgumentException("Status cannot be null.");
+		}
+		return statusIndex.count(status);
+	}
+
+	/**
+	 * Return page of customers with status in ascending id order (keyset
+	 * paging), see {@link #findPage(long, int)}.
+	 *
+	 * @param status status of customers.
+	 * @param after  cursor, id after which the page starts, -1 for first page.
+	 * @param limit  maximum number of customers in the page, must be
+	 *               {@code > 0}.
+	 * @return customers with status of the page.
+	 * @throws IllegalArgumentException if {@literal status} is {@literal null}
+	 *                                  or {@literal limit} is not positive.
+	 */
+	public List<Customer> findByStatus(Customer.Status status, long after, int limit) {
+		if (status == null) {
+			throw new IllegalArgumentException("Status cannot be null.");
+		}
+		if (limit <= 0) {
+			throw new IllegalArgumentException("Limit must be > 0.");
+		}
+		return statusIndex.find(status, after, limit);
+	}
+
+	/**
+	 * Test whether a customer with status and an id greater than cursor
+	 * {@code after} exists.
+	 *
+	 * @param status status of customers.
+	 * @param after  cursor, id after which the next page starts.
+	 * @return true if customers with status follow the cursor.
+	 */
+	public boolean hasStatusPageAfter(Customer.Status status, long after) {
+		return statusIndex.hasAfter(status, after);
 	}
 
 	@Override
 	public Iterable<Customer> findAllById(Iterable<Long> ids) {
 		if (ids != null) {
-			HashSet<Customer> hits = new HashSet<Customer>();
+			List<Customer> hits = new ArrayList<Customer>();
 			for (Long id : ids) {
-				if (findById(id).isPresent()) {
-					hits.add(findById(id).get());
-				}
+				findById(id).ifPresent(hits::add);
 			}
 			return hits;
 		} else {
@@ -93,18 +606,20 @@ public class CustomerRepository implements CrudRepository<Customer, Long> {
 
 	@Override
 	public long count() {
-		if (customerSet != null) {
-			return customerSet.size();
-		} else {
-			throw new IllegalArgumentException("Set of Customers cannot be null.");
-		}
+		return count.get();
 	}
 
 	@Override
 	public void deleteById(Long id) {
 		if (id != null) {
-			if (findById(id).isPresent()) {
-				customerSet.remove(findById(id).get());
+			int s = stripe(id);
+			locks[s].writeLock().lock();
+			try {
+				if (remove(id) && logging()) {
+					customerLog.appendDelete(id);
+				}
+			} finally {
+				locks[s].writeLock().unlock();
 			}
 		} else {
 			throw new IllegalArgumentException("Id cannot be null.");
@@ -114,7 +629,19 @@ public class CustomerRepository implements CrudRepository<Customer, Long> {
 	@Override
 	public void delete(Customer entity) {
 		if (entity != null) {
-			customerSet.remove(entity);
+			int s = stripe(entity.getId());
+			locks[s].writeLock().lock();
+			try {
+				// remove only if the stored entity is the given one
+				if (isStored(entity)) {
+					remove(entity.getId());
+					if (logging()) {
+						customerLog.appendDelete(entity.getId());
+					}
+				}
+			} finally {
+				locks[s].writeLock().unlock();
+			}
 		} else {
 			throw new IllegalArgumentException("Customer cannot be null.");
 		}
@@ -122,29 +649,403 @@ public class CustomerRepository implements CrudRepository<Customer, Long> {
 
 	@Override
 	public void deleteAllById(Iterable<? extends Long> ids) {
-		if (ids != null) {
-			for (Long id : ids) {
-				deleteById(id);
-			}
-		} else {
-			throw new IllegalArgumentException("Ids cannot be null.");
-		}
+		removeAllById(ids);
 	}
 
 	@Override
 	public void deleteAll(Iterable<? extends Customer> entities) {
 		if (entities != null) {
+			int n = 0;
 			for (Customer c : entities) {
-				delete(c);
+				if (c == null) {
+					throw new IllegalArgumentException("Customer cannot be null.");
+				}
+				n++;
 			}
+			long[] ids = new long[n];
+			Customer[] expected = new Customer[n];
+			int i = 0;
+			for (Customer c : entities) {
+				ids[i] = c.getId();
+				expected[i++] = c;
+			}
+			removeEach(ids, expected);
 		} else {
 			throw new IllegalArgumentException("Ids cannot be null.");
 		}
 	}
 
+	/**
+	 * Delete entities with given ids in one pass, ids that are not found are
+	 * ignored. Each id is looked up once and removed under the write lock of its
+	 * stripe, ids are processed in the given order (ascending ids touch the
+	 * ordered index in sequence).
+	 *
+	 * @param ids ids of entities to delete, must not be {@literal null} nor
+	 *            contain {@literal null}.
+	 * @return ids of deleted entities.
+	 * @throws IllegalArgumentException in case the given {@literal ids} or one of
+	 *                                  its elements is {@literal null}; nothing is
+	 *                                  deleted then.
+	 */
+	public List<Long> removeAllById(Iterable<? extends Long> ids) {
+		if (ids == null) {
+			throw new IllegalArgumentException("Ids cannot be null.");
+		}
+		long[] idArray = new long[16];
+		int n = 0;
+		for (Long id : ids) {
+			if (id == null) {
+				throw new IllegalArgumentException("Id cannot be null.");
+			}
+			if (n == idArray.length) {
+				idArray = Arrays.copyOf(idArray, n * 2);
+			}
+			idArray[n++] = id;
+		}
+		return removeEach(Arrays.copyOf(idArray, n), null);
+	}
+
+	/**
+	 * Delete entities with ids in range {@code from <= id <= to} in one pass, see
+	 * {@link #removeAllById(Iterable)}. Entities inserted into the range while
+	 * the range is deleted may remain.
+	 *
+	 * @param from first id of range.
+	 * @param to   last id of range.
+	 * @return ids of deleted entities.
+	 * @throws IllegalArgumentException in case {@literal from > to}.
+	 */
+	public List<Long> removeRange(long from, long to) {
+		if (from > to) {
+			throw new IllegalArgumentException("Range start must be <= range end.");
+		}
+		return removeAllById(orderedIndex.subMap(from, true, to, true).keySet());
+	}
+
 	@Override
 	public void deleteAll() {
-		customerSet.clear();
+		lockAll(true);
+		try {
+			batches++;
+			clear();
+			if (logging()) {
+				customerLog.appendDeleteAll();
+			}
+		} finally {
+			unlockAll(true);
+		}
+	}
+
+	/*
+	 * private methods
+	 */
+
+	/**
+	 * Insert or replace entity, caller holds write lock of the stripe.
+	 */
+	private void put(Customer entity) {
+		int s = stripe(entity.getId());
+		Customer old = customerTables[s].put(entity.getId(), entity);
+		if (old != entity) {
+			stripeVersions[s]++;
+		}
+		if (old == null) {
+			count.incrementAndGet();
+			idAllocator.reserve(entity.getId());
+		} else if (old != entity) {
+			old.setListener(null);
+		}
+		orderedIndex.put(entity.getId(), entity);
+		entity.setListener(indexer);
+		indexNames(entity);
+		contactIndex.put(entity);
+		statusIndex.put(entity);
+		entity.readOnlyCopy(); // taken by writer, snapshots only copy references
+	}
+
+	/**
+	 * Remove entity with id, caller holds write lock of the stripe.
+	 */
+	private boolean remove(long id) {
+		int s = stripe(id);
+		Customer old = customerTables[s].remove(id);
+		if (old != null) {
+			stripeVersions[s]++;
+			old.setListener(null);
+			orderedIndex.remove(id);
+			lastNameIndex.remove(id);
+			firstNameIndex.remove(id);
+			contactIndex.remove(id);
+			statusIndex.remove(id);
+			count.decrementAndGet();
+			idAllocator.release(id);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Remove all entities, caller holds write locks of all stripes.
+	 */
+	private void clear() {
+		for (int s = 0; s < STRIPES; s++) {
+			for (Customer c : customerTables[s].values()) {
+				c.setListener(null);
+			}
+			customerTables[s].clear();
+			stripeVersions[s]++;
+		}
+		orderedIndex.clear();
+		lastNameIndex.clear();
+		firstNameIndex.clear();
+		contactIndex.clear();
+		statusIndex.clear();
+		count.set(0);
+		idAllocator.clear();
+	}
+
+	/**
+	 * Remove entities with ids in given order, each under the write lock of its
+	 * stripe. If expected entities are given, an entity is only removed if it is
+	 * the stored entity with its id, see {@link #isStored(Customer)}.
+	 */
+	private List<Long> removeEach(long[] ids, Customer[] expected) {
+		List<Long> removed = new ArrayList<Long>();
+		for (int i = 0; i < ids.length; i++) {
+			int s = stripe(ids[i]);
+			locks[s].writeLock().lock();
+			try {
+				if (expected != null && !isStored(expected[i])) {
+					continue;
+				}
+				if (remove(ids[i])) {
+					removed.add(ids[i]);
+					if (logging()) {
+						customerLog.appendDelete(ids[i]);
+					}
+				}
+			} finally {
+				locks[s].writeLock().unlock();
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Return unmodifiable list of all entities, each stripe is read-locked
+	 * while it is copied if lockStripes is true, otherwise the caller holds read
+	 * locks of all stripes. Copies of unchanged stripes are reused.
+	 */
+	private List<Customer> collect(boolean lockStripes) {
+		Customer[][] parts = new Customer[STRIPES][];
+		for (int s = 0; s < STRIPES; s++) {
+			if (lockStripes) {
+				locks[s].readLock().lock();
+			}
+			try {
+				StripeCopy copy = stripeCopies[s];
+				if (copy == null || copy.version != stripeVersions[s]) {
+					// concurrent readers may copy the same stripe, copies are equal
+					copy = new StripeCopy(stripeVersions[s], customerTables[s]);
+					stripeCopies[s] = copy;
+				}
+				parts[s] = copy.customers;
+			} finally {
+				if (lockStripes) {
+					locks[s].readLock().unlock();
+				}
+			}
+		}
+		return new Snapshot(parts);
+	}
+
+	/**
+	 * Test whether entity is the stored entity with its id or a read-only copy
+	 * of its current state (e.g. taken from a snapshot), caller holds lock of
+	 * the stripe.
+	 */
+	private boolean isStored(Customer entity) {
+		Customer stored = customerTables[stripe(entity.getId())].get(entity.getId());
+		return stored != null && (stored == entity || (entity.isReadOnly() && stored.readOnlyCopy() == entity));
+	}
+
+	/**
+	 * Update index entries of stored customer after a change notified by the
+	 * customer, ignored if the customer is no longer stored. Changes made through
+	 * setters of the customer outside of repository methods are also logged,
+	 * after they were applied; repository methods log their own changes.
+	 */
+	private void reindex(Customer c, Consumer<Customer> update) {
+		int s = stripe(c.getId());
+		boolean nested = locks[s].isWriteLockedByCurrentThread();
+		locks[s].writeLock().lock();
+		try {
+			if (customerTables[s].get(c.getId()) == c) {
+				stripeVersions[s]++;
+				update.accept(c);
+				c.readOnlyCopy();
+				if (!nested && logging()) {
+					customerLog.appendSave(c);
+				}
+			}
+		} finally {
+			locks[s].writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Merge change into customer: name is replaced, new contacts are added.
+	 */
+	private static Customer merge(Customer customer, Customer change) {
+		customer.setName(change.getFirstName(), change.getLastName());
+		customer.addContacts(change.getContacts());
+		return customer;
+	}
+
+	/**
+	 * Return detached copy of customer.
+	 */
+	private static Customer copy(Customer c) {
+		Customer copy = new Customer().setId(c.getId()).setName(c.getFirstName(), c.getLastName())
+				.setStatus(c.getStatus());
+		copy.addContacts(c.getContacts());
+		return copy;
+	}
+
+	/**
+	 * Update name index entries of entity, caller holds write lock of the
+	 * stripe.
+	 */
+	private void indexNames(Customer entity) {
+		lastNameIndex.put(entity, entity.getLastName());
+		firstNameIndex.put(entity, entity.getFirstName());
+	}
+
+	private List<Customer> findByPrefix(NameIndex index, String prefix, int limit) {
+		if (prefix == null) {
+			throw new IllegalArgumentException("Prefix cannot be null.");
+		}
+		if (limit <= 0) {
+			throw new IllegalArgumentException("Limit must be > 0.");
+		}
+		return index.find(prefix, limit);
+	}
+
+	private boolean snapshots() {
+		return customerSnapshot != null && customerSnapshot.isEnabled();
+	}
+
+	private boolean logging() {
+		return customerLog != null && customerLog.isEnabled();
+	}
+
+	private Customer get(long id) {
+		int s = stripe(id);
+		locks[s].readLock().lock();
+		try {
+			return customerTables[s].get(id);
+		} finally {
+			locks[s].readLock().unlock();
+		}
+	}
+
+	private static int stripe(long id) {
+		// spread high bits, consecutive ids fall into different stripes
+		long h = id ^ (id >>> 32);
+		return (int) (h ^ (h >>> 16)) & (STRIPES - 1);
+	}
+
+	private void lockAll(boolean write) {
+		for (ReentrantReadWriteLock lock : locks) {
+			(write ? lock.writeLock() : lock.readLock()).lock();
+		}
+	}
+
+	private void unlockAll(boolean write) {
+		for (int i = STRIPES - 1; i >= 0; i--) {
+			(write ? locks[i].writeLock() : locks[i].readLock()).unlock();
+		}
+	}
+
+	/**
+	 * Immutable copy of the entities of one stripe taken at a stripe version,
+	 * holds read-only copies of entities that are shared with the previous
+	 * copy while unchanged.
+	 */
+	private static final class StripeCopy {
+		final long version;
+		final Customer[] customers;
+
+		StripeCopy(long version, LongHashMap<Customer> table) {
+			Customer[] copy = new Customer[table.size()];
+			int i = 0;
+			for (Customer c : table.values()) {
+				copy[i++] = c.readOnlyCopy();
+			}
+			this.version = version;
+			this.customers = copy;
+		}
+	}
+
+	/**
+	 * Unmodifiable list of all entities composed of stripe copies.
+	 */
+	private static final class Snapshot extends AbstractList<Customer> {
+		private final Customer[][] parts;
+		private final int size;
+
+		Snapshot(Customer[][] parts) {
+			int n = 0;
+			for (Customer[] part : parts) {
+				n += part.length;
+			}
+			this.parts = parts;
+			this.size = n;
+		}
+
+		@Override
+		public Customer get(int index) {
+			if (index >= 0) {
+				for (Customer[] part : parts) {
+					if (index < part.length) {
+						return part[index];
+					}
+					index -= part.length;
+				}
+			}
+			throw new IndexOutOfBoundsException();
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public Iterator<Customer> iterator() {
+			return new Iterator<Customer>() {
+				private int p = 0;
+				private int i = 0;
+
+				@Override
+				public boolean hasNext() {
+					while (p < parts.length && i == parts[p].length) {
+						p++;
+						i = 0;
+					}
+					return p < parts.length;
+				}
+
+				@Override
+				public Customer next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					return parts[p][i++];
+				}
+			};
+		}
 	}
 
 }
@@ -0,0 +1,157 @@
+package de.freerider.repository;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import de.freerider.datamodel.Customer;
+
+/**
+ * Compact binary snapshot of the customer repository, written and loaded
+ * through memory-mapped files. A snapshot records the position of the
+ * CustomerLog up to which changes are contained, such that recovery loads the
+ * snapshot and replays only the log tail after that position.
+ *
+ * File layout: {@code int magic, long count, long logPosition} followed by
+ * {@code count} records {@code int length, encoded Customer}. The file is
+ * written to a temporary file that replaces the previous snapshot when
+ * complete, the end of the file may be padded with zeros.
+ *
+ * Snapshots are configured in application.properties, they are disabled by
+ * default:
+ *
+ * <pre>
+ * {@code
+ * app.repository.snapshot.enabled = true
+ * app.repository.snapshot.file = data/customers.snapshot
+ * app.repository.snapshot.interval-ms = 300000
+ * }
+ * </pre>
+ */
+
+@Component
+public class CustomerSnapshot {
+
+	private static final int MAGIC = 0xC0570001;
+
+	private static final int HEADER = Integer.BYTES + 2 * Long.BYTES;
+
+	/*
+	 * size of mapped regions.
+	 */
+	private static final int REGION = 8 << 20;
+
+	@Value("${app.repository.snapshot.enabled:false}")
+	private boolean enabled;
+
+	@Value("${app.repository.snapshot.file:data/customers.snapshot}")
+	private String file;
+
+	/**
+	 * Return whether snapshots are enabled.
+	 *
+	 * @return true if snapshots are enabled.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Load customers from the snapshot file. Customer objects are decoded
+	 * directly from the mapped file.
+	 *
+	 * @param sink receiver of loaded Customer objects.
+	 * @return log position of the snapshot, 0 if no snapshot exists.
+	 * @throws IOException when reading the snapshot fails.
+	 */
+	public long load(Consumer<Customer> sink) throws IOException {
+		Path path = Paths.get(file);
+		if (!Files.exists(path)) {
+			return 0;
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, REGION));
+			if (size < HEADER || region.getInt() != MAGIC) {
+				throw new IOException("invalid snapshot file: " + path);
+			}
+			long count = region.getLong();
+			long logPosition = region.getLong();
+			long base = 0; // file offset of region
+			for (long i = 0; i < count; i++) {
+				if (region.remaining() < Integer.BYTES
+						|| region.remaining() < Integer.BYTES + region.getInt(region.position())) {
+					// record exceeds region, map next region starting at record
+					base += region.position();
+					int length = Integer.BYTES + readLength(channel, base);
+					region = channel.map(FileChannel.MapMode.READ_ONLY, base,
+							Math.min(size - base, Math.max(REGION, length)));
+				}
+				int length = region.getInt();
+				int end = region.position() + length;
+				sink.accept(CustomerCodec.decode(region));
+				region.position(end);
+			}
+			return logPosition;
+		}
+	}
+
+	/**
+	 * Write snapshot of customers. The snapshot replaces the previous snapshot
+	 * after it was completely written and forced to disk.
+	 *
+	 * @param customers   customers in the snapshot.
+	 * @param logPosition position of the log that corresponds to the snapshot.
+	 * @return number of customers written.
+	 * @throws IOException when writing the snapshot fails.
+	 */
+	public long write(Iterable<Customer> customers, long logPosition) throws IOException {
+		Path path = Paths.get(file);
+		Path tmp = Paths.get(file + ".tmp");
+		if (path.getParent() != null) {
+			Files.createDirectories(path.getParent());
+		}
+		long count = 0;
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+			long base = HEADER; // file offset of region
+			MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, base, REGION);
+			for (Customer c : customers) {
+				byte[] bytes = CustomerCodec.encode(c);
+				if (region.remaining() < Integer.BYTES + bytes.length) {
+					region.force();
+					base += region.position();
+					region = channel.map(FileChannel.MapMode.READ_WRITE, base,
+							Math.max(REGION, Integer.BYTES + bytes.length));
+				}
+				region.putInt(bytes.length).put(bytes);
+				count++;
+			}
+			region.force();
+			// header is written last, snapshot is valid only when complete
+			header.putInt(MAGIC).putLong(count).putLong(logPosition);
+			header.force();
+		}
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return count;
+	}
+
+	/*
+	 * private methods
+	 */
+
+	private static int readLength(FileChannel channel, long position) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, Integer.BYTES).getInt();
+	}
+
+}
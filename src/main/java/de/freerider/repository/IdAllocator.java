@@ -0,0 +1,100 @@
+package de.freerider.repository;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Thread-safe allocator of customer ids in O(1). Ids are drawn from a
+ * monotonic sequence that is kept above every id stored in the repository.
+ * When reuse is enabled, ids released by deleted customers are handed out
+ * again before the sequence advances.
+ *
+ * The repository reserves the id of every stored customer, including customers
+ * recovered from snapshot and log, such that the sequence is restored with the
+ * repository. Released ids are not persisted, gaps are not reused after a
+ * restart.
+ *
+ * Reuse is configured in application.properties:
+ *
+ * <pre>
+ * {@code
+ * app.repository.ids.reuse = false
+ * }
+ * </pre>
+ */
+
+@Component
+public class IdAllocator {
+
+	@Value("${app.repository.ids.reuse:false}")
+	private boolean reuse;
+
+	/**
+	 * next id of the sequence, ids start at 1.
+	 */
+	private final AtomicLong next = new AtomicLong(1);
+
+	/*
+	 * released ids in release order, ids no longer in freeSet are skipped.
+	 */
+	private final Queue<Long> freeList = new ConcurrentLinkedQueue<Long>();
+
+	private final Set<Long> freeSet = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Allocate new id that is not used by a currently stored customer.
+	 *
+	 * @return allocated id.
+	 */
+	public long allocate() {
+		if (reuse) {
+			for (Long id = freeList.poll(); id != null; id = freeList.poll()) {
+				if (freeSet.remove(id)) {
+					return id;
+				}
+			}
+		}
+		return next.getAndIncrement();
+	}
+
+	/**
+	 * Mark id as used, the sequence is advanced past id and id is no longer
+	 * handed out for reuse.
+	 *
+	 * @param id id of a stored customer.
+	 */
+	public void reserve(long id) {
+		if (id >= next.get()) {
+			next.accumulateAndGet(id + 1, Math::max);
+		}
+		if (reuse && !freeSet.isEmpty()) {
+			freeSet.remove(id);
+		}
+	}
+
+	/**
+	 * Release id of deleted customer for reuse, if enabled.
+	 *
+	 * @param id id of deleted customer.
+	 */
+	public void release(long id) {
+		if (reuse && freeSet.add(id)) {
+			freeList.add(id);
+		}
+	}
+
+	/**
+	 * Discard all released ids, the sequence is not reset.
+	 */
+	public void clear() {
+		freeSet.clear();
+		freeList.clear();
+	}
+
+}
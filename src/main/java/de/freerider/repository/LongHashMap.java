@@ -0,0 +1,259 @@
+package de.freerider.repository;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Hash map with primitive {@code long} keys used as primary-key index by
+ * repositories. Keys are stored in a {@code long[]} (no {@code Long} boxing per
+ * probe), collisions are resolved by open addressing with linear probing and
+ * removal uses backward-shift deletion, so no tombstones accumulate.
+ *
+ * Class is not thread-safe, callers must synchronize access.
+ *
+ * @param <V> type of values stored in the map, values are never null.
+ */
+
+class LongHashMap<V> {
+
+	/*
+	 * golden-ratio multiplier for Fibonacci hashing of keys.
+	 */
+	private static final long PHI = 0x9E3779B97F4A7C15L;
+
+	private static final int MIN_CAPACITY = 16;
+
+	/**
+	 * key column, slot {@code i} is used when {@code values[i] != null}.
+	 */
+	private long[] keys;
+
+	/**
+	 * value column, null marks a free slot.
+	 */
+	private Object[] values;
+
+	/**
+	 * number of entries in the map.
+	 */
+	private int size = 0;
+
+	/**
+	 * {@code 64 - log2(capacity)}, shift to map hashes onto slots.
+	 */
+	private int shift;
+
+	/**
+	 * structural modifications, used to detect concurrent modification during
+	 * iteration.
+	 */
+	private int modCount = 0;
+
+	/**
+	 * Default constructor.
+	 */
+	LongHashMap() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * Constructor with expected number of entries.
+	 *
+	 * @param expected number of entries the map holds without resizing.
+	 */
+	LongHashMap(int expected) {
+		allocate(tableSizeFor(expected));
+	}
+
+	/**
+	 * Return number of entries.
+	 *
+	 * @return number of entries.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Test whether key is present.
+	 *
+	 * @param key key to look up.
+	 * @return true if key is mapped to a value.
+	 */
+	boolean containsKey(long key) {
+		return values[slotOf(key)] != null;
+	}
+
+	/**
+	 * Return value mapped to key.
+	 *
+	 * @param key key to look up.
+	 * @return mapped value or null if key is not present.
+	 */
+	@SuppressWarnings("unchecked")
+	V get(long key) {
+		return (V) values[slotOf(key)];
+	}
+
+	/**
+	 * Map key to value, replace existing value.
+	 *
+	 * @param key   key of the entry.
+	 * @param value value of the entry, must not be null.
+	 * @return value previously mapped to key or null.
+	 */
+	@SuppressWarnings("unchecked")
+	V put(long key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Value cannot be null.");
+		}
+		int i = slotOf(key);
+		V previous = (V) values[i];
+		if (previous == null) {
+			if ((size + 1) * 2 > values.length) {
+				resize(values.length << 1);
+				i = slotOf(key);
+			}
+			keys[i] = key;
+			size++;
+			modCount++;
+		}
+		values[i] = value;
+		return previous;
+	}
+
+	/**
+	 * Remove entry with key.
+	 *
+	 * @param key key of the entry to remove.
+	 * @return removed value or null if key was not present.
+	 */
+	@SuppressWarnings("unchecked")
+	V remove(long key) {
+		int i = slotOf(key);
+		V removed = (V) values[i];
+		if (removed != null) {
+			// backward-shift entries of the probe sequence into the gap
+			int mask = values.length - 1;
+			int j = i;
+			while (true) {
+				j = (j + 1) & mask;
+				if (values[j] == null)
+					break;
+				int home = home(keys[j]);
+				// move entry j into gap i unless its home slot lies cyclically in (i, j]
+				boolean homeInRange = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+				if (!homeInRange) {
+					keys[i] = keys[j];
+					values[i] = values[j];
+					i = j;
+				}
+			}
+			values[i] = null;
+			size--;
+			modCount++;
+		}
+		return removed;
+	}
+
+	/**
+	 * Remove all entries, table capacity is reset.
+	 */
+	void clear() {
+		allocate(MIN_CAPACITY);
+		size = 0;
+		modCount++;
+	}
+
+	/**
+	 * Return values as {@code Iterable<V>} view. Iterators are fail-fast and throw
+	 * ConcurrentModificationException when the map is structurally modified during
+	 * iteration; they do not support removal.
+	 *
+	 * @return values as {@code Iterable<V>}.
+	 */
+	Iterable<V> values() {
+		return () -> new Iterator<V>() {
+			private final Object[] table = values;
+			private final int expectedModCount = modCount;
+			private int next = advance(0);
+
+			private int advance(int from) {
+				while (from < table.length && table[from] == null) {
+					from++;
+				}
+				return from;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next < table.length;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public V next() {
+				if (modCount != expectedModCount)
+					throw new ConcurrentModificationException();
+				if (next >= table.length)
+					throw new NoSuchElementException();
+				V v = (V) table[next];
+				next = advance(next + 1);
+				return v;
+			}
+		};
+	}
+
+	/*
+	 * private methods
+	 */
+
+	/**
+	 * Return slot that holds key or the free slot where key would be inserted.
+	 */
+	private int slotOf(long key) {
+		int mask = values.length - 1;
+		int i = home(key);
+		while (values[i] != null && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private int home(long key) {
+		return (int) ((key * PHI) >>> shift);
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		shift = 64 - Integer.numberOfTrailingZeros(capacity);
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(capacity);
+		int mask = capacity - 1;
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int j = home(oldKeys[i]);
+				while (values[j] != null) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	private static int tableSizeFor(int expected) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < (1 << 30) && capacity < expected * 2) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+}
@@ -0,0 +1,88 @@
+package de.freerider.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import de.freerider.datamodel.Customer;
+
+/**
+ * Sorted secondary index of customers by a case-folded name attribute. Prefix
+ * lookups take {@code O(log n + k)} for {@code k} results.
+ *
+ * Entries are keyed by {@code folded name + '\0' + id}, such that customers
+ * with equal names have distinct keys and all names with a given prefix form
+ * one contiguous range of the sorted map. The key of each indexed id is kept to
+ * remove entries independently of the current name of the customer object.
+ *
+ * Updates of the same id must be serialized by the caller (the repository
+ * holds the stripe write lock of the id), lookups run concurrently.
+ */
+
+final class NameIndex {
+
+	private final ConcurrentSkipListMap<String, Customer> index = new ConcurrentSkipListMap<String, Customer>();
+
+	private final ConcurrentHashMap<Long, String> keys = new ConcurrentHashMap<Long, String>();
+
+	/**
+	 * Index customer under name, replaces previous entry of the customer's id.
+	 *
+	 * @param c    customer to index.
+	 * @param name name under which the customer is indexed.
+	 */
+	void put(Customer c, String name) {
+		String key = fold(name) + '\0' + c.getId();
+		String old = keys.put(c.getId(), key);
+		if (old != null && !old.equals(key)) {
+			index.remove(old);
+		}
+		index.put(key, c);
+	}
+
+	/**
+	 * Remove entry of id.
+	 *
+	 * @param id id of customer to remove.
+	 */
+	void remove(long id) {
+		String key = keys.remove(id);
+		if (key != null) {
+			index.remove(key);
+		}
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	void clear() {
+		index.clear();
+		keys.clear();
+	}
+
+	/**
+	 * Find customers with names starting with prefix (case-insensitive) in
+	 * ascending name order.
+	 *
+	 * @param prefix name prefix, "" matches all names.
+	 * @param limit  maximum number of customers returned.
+	 * @return customers with matching names.
+	 */
+	List<Customer> find(String prefix, int limit) {
+		String from = fold(prefix);
+		List<Customer> hits = new ArrayList<Customer>(Math.min(limit, 1024));
+		for (Customer c : index.subMap(from, true, from + '\uffff', true).values()) {
+			if (hits.size() == limit)
+				break;
+			hits.add(c);
+		}
+		return hits;
+	}
+
+	private static String fold(String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+
+}
@@ -0,0 +1,129 @@
+package de.freerider.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.freerider.datamodel.Customer;
+
+/**
+ * Index that partitions customers by status. Each partition is ordered by id
+ * for keyset paging, the size of each partition is counted separately such
+ * that counts are returned in constant time.
+ *
+ * Updates of the same id must be serialized by the caller (the repository
+ * holds the stripe write lock of the id), lookups run concurrently.
+ */
+
+final class StatusIndex {
+
+	private static final Customer.Status[] STATUS = Customer.Status.values();
+
+	@SuppressWarnings("unchecked")
+	private final ConcurrentSkipListMap<Long, Customer>[] partitions =
+			(ConcurrentSkipListMap<Long, Customer>[]) new ConcurrentSkipListMap<?, ?>[STATUS.length];
+
+	private final AtomicLong[] counts = new AtomicLong[STATUS.length];
+
+	/**
+	 * Default constructor.
+	 */
+	StatusIndex() {
+		for (int i = 0; i < STATUS.length; i++) {
+			partitions[i] = new ConcurrentSkipListMap<Long, Customer>();
+			counts[i] = new AtomicLong();
+		}
+	}
+
+	/**
+	 * Index customer under its status, replaces previous entry of the
+	 * customer's id.
+	 *
+	 * @param c customer to index.
+	 */
+	void put(Customer c) {
+		int p = c.getStatus().ordinal();
+		if (partitions[p].put(c.getId(), c) == null) {
+			counts[p].incrementAndGet();
+		}
+		for (int i = 0; i < STATUS.length; i++) {
+			if (i != p) {
+				unlink(i, c.getId());
+			}
+		}
+	}
+
+	/**
+	 * Remove entry of id.
+	 *
+	 * @param id id of customer to remove.
+	 */
+	void remove(long id) {
+		for (int i = 0; i < STATUS.length; i++) {
+			unlink(i, id);
+		}
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	void clear() {
+		for (int i = 0; i < STATUS.length; i++) {
+			partitions[i].clear();
+			counts[i].set(0);
+		}
+	}
+
+	/**
+	 * Return number of customers with status.
+	 *
+	 * @param status status to count.
+	 * @return number of customers with status.
+	 */
+	long count(Customer.Status status) {
+		return counts[status.ordinal()].get();
+	}
+
+	/**
+	 * Find customers with status in ascending id order, starting after id
+	 * {@code after}.
+	 *
+	 * @param status status of customers.
+	 * @param after  cursor, id after which customers are returned.
+	 * @param limit  maximum number of customers returned.
+	 * @return customers with status.
+	 */
+	List<Customer> find(Customer.Status status, long after, int limit) {
+		List<Customer> hits = new ArrayList<Customer>(Math.min(limit, 1024));
+		for (Customer c : partitions[status.ordinal()].tailMap(after, false).values()) {
+			if (hits.size() == limit)
+				break;
+			hits.add(c);
+		}
+		return hits;
+	}
+
+	/**
+	 * Test whether a customer with status and an id greater than {@code after}
+	 * exists.
+	 *
+	 * @param status status of customers.
+	 * @param after  cursor, id after which customers are tested.
+	 * @return true if customers with status follow the cursor.
+	 */
+	boolean hasAfter(Customer.Status status, long after) {
+		return partitions[status.ordinal()].higherKey(after) != null;
+	}
+
+	/*
+	 * private methods
+	 */
+
+	private void unlink(int p, long id) {
+		if (partitions[p].remove(id) != null) {
+			counts[p].decrementAndGet();
+		}
+	}
+
+}
@@ -10,6 +10,8 @@ import java.util.Optional;
 
 import javax.servlet.http.HttpServletRequest;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ConfigurableApplicationContext;
@@ -26,14 +28,21 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import de.freerider.app.Application;
 import de.freerider.datamodel.Customer;
 import de.freerider.repository.CustomerRepository;
+import de.freerider.repository.IdAllocator;
+import de.freerider.restapi.dto.CustomerValidator;
 
 //@RestController
 public class CustomersController implements CustomersAPI {
 
+	private static final Logger log = LoggerFactory.getLogger(CustomersController.class);
+
 	@Autowired
 	private CustomerRepository customerRepository;
 	//
 	@Autowired
+	private IdAllocator idAllocator;
+	//
+	@Autowired
 	private ApplicationContext context;
 	//
 	private final ObjectMapper objectMapper;
@@ -63,7 +72,7 @@ public class CustomersController implements CustomersAPI {
 	public ResponseEntity<List<?>> getCustomers() {
 		//
 		ResponseEntity<List<?>> re = null;
-		System.err.println(request.getMethod() + " " + request.getRequestURI());
+		log.info("method={} uri={}", request.getMethod(), request.getRequestURI());
 		try {
 			ArrayNode arrayNode = customersAsJSON();
 			ObjectReader reader = objectMapper.readerFor(new TypeReference<List<ObjectNode>>() {
@@ -89,7 +98,7 @@ public class CustomersController implements CustomersAPI {
 	public ResponseEntity<?> getCustomer(long id) {
 		//
 		ResponseEntity<List<?>> re = null;
-		System.err.println(request.getMethod() + " " + request.getRequestURI());
+		log.info("method={} uri={}", request.getMethod(), request.getRequestURI());
 		try {
 			ArrayNode arrayNode = customerAsJSON(id);
 			ObjectReader reader = objectMapper.readerFor(new TypeReference<List<ObjectNode>>() {
@@ -135,18 +144,15 @@ public class CustomersController implements CustomersAPI {
 
 	@Override
 	public ResponseEntity<List<?>> postCustomers(Map<String, Object>[] jsonMap) {
-		System.err.println("POST /customers");
+		log.info("method={} uri={}", request.getMethod(), request.getRequestURI());
 		List<Map<String, Object>> unaccepted = new ArrayList<Map<String, Object>>();
 		if (jsonMap == null) {
 			return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
 		}
-		for (Map<String, Object> kvpairs : jsonMap) {
-			System.out.println("[{");
-			kvpairs.keySet().forEach(key -> {
-				Object value = kvpairs.get(key);
-				System.out.println(" [" + key + ", " + value + "]");
-			});
-			System.out.println("}]\n");
+		if (log.isDebugEnabled()) {
+			for (Map<String, Object> kvpairs : jsonMap) {
+				log.debug("customer json={}", kvpairs);
+			}
 		}
 
 		for (Map<String, Object> map : jsonMap) {
@@ -173,8 +179,10 @@ public class CustomersController implements CustomersAPI {
 	 */
 	private Optional<Customer> accept(Map<String, Object> kvpairs) {
 		Optional<Customer> opt = Optional.empty();
-		// must contain first and last name
-		if (kvpairs.containsKey("name") && kvpairs.containsKey("first")) {
+		// must contain first and last name, last name must not be null or empty (rule E)
+		Object last = kvpairs.get("name");
+		if (last != null && kvpairs.get("first") != null
+				&& CustomerValidator.checkName(last.toString()) == CustomerValidator.VALID) {
 			Long id = (long) 1;
 			// check Id
 			if (kvpairs.containsKey("id")) {
@@ -183,13 +191,8 @@ public class CustomersController implements CustomersAPI {
 					// HTTP Response einfügen?!
 					throw new IllegalArgumentException("Id must be > 0.");
 				}
-			} else { // if there's no Id, create new
-				for (int i = 1; i < customerRepository.count() + 2; i++) {
-					if (customerRepository.findById(Long.valueOf(i)).isEmpty()) { // find empty Id
-						id = Long.valueOf(i);
-						break;
-					}
-				}
+			} else { // if there's no Id, allocate new
+				id = idAllocator.allocate();
 			}
 			Customer c = new Customer();
 			c.setId(id).setName(kvpairs.get("first").toString(), kvpairs.get("name").toString());
@@ -218,10 +221,10 @@ public class CustomersController implements CustomersAPI {
 
 	@Override
 	public ResponseEntity<?> deleteCustomer(long id) {
-		System.err.println("DELETE /customers/" + id);
+		log.info("method={} uri={}", request.getMethod(), request.getRequestURI());
 		if (customerRepository.findById(id).isPresent()) {
 			customerRepository.deleteById(id);
-			System.out.println("Customer deleted.");
+			log.debug("customer deleted: id={}", id);
 			return new ResponseEntity<>(null, HttpStatus.ACCEPTED); // status 202
 		} else {
 			return new ResponseEntity<>(null, HttpStatus.NOT_FOUND);
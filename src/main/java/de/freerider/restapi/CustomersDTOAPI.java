@@ -1,20 +1,26 @@
 package de.freerider.restapi;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import de.freerider.restapi.dto.CustomerDTO;
+import de.freerider.restapi.dto.RejectDTO;
 import io.swagger.annotations.ApiParam;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 
@@ -27,8 +33,27 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
  * - GET /customers - return JSON data for all customer in the repository,
  * status: 200 OK.
  * 
+ * - GET /customers?after={id}&limit={n} - return page of customers following
+ * cursor {id} in id order, status: 200 OK, 400 bad request.
+ * 
+ * - GET /customers?format=ndjson - return newline-delimited JSON data for all
+ * customer in the repository, status: 200 OK.
+ * 
+ * - GET /customers/search?lastName={prefix} or ?firstName={prefix} - return
+ * customers with names starting with prefix (case-insensitive), status: 200
+ * OK, 400 bad request.
+ * 
+ * - GET /customers/lookup?contact={contact} - return customers holding contact,
+ * e.g. email or phone number, status: 200 OK, 400 bad request.
+ * 
+ * - GET /customers/status - return number of customers per status, status: 200
+ * OK.
+ * 
+ * - GET /customers/status/{status}?after={id}&limit={n} - return page of
+ * customers with status, status: 200 OK, 400 bad request.
+ * 
  * - GET /customers/{id} - return JSON data for customer with id, status: 200
- * OK, 404 not found.
+ * OK, 304 not modified (If-None-Match), 404 not found.
  * 
  * - POST /customers - create new objects in the repository from JSON objects
  * passed with the request, status: 201 created, 409 conflict, 400 bad request.
@@ -37,9 +62,19 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
  * objects passed with the request, status: 202 accepted, 404 not found, 400 bad
  * request.
  * 
+ * - POST /customers?mode=stream, PUT /customers?mode=stream - like POST and PUT
+ * with JSON objects processed while the request is read, rejects are reported
+ * per object.
+ * 
  * - DELETE /customers/{id} - delete customer with id, status: 202 accepted, 404
  * not found, 400 bad request.
  * 
+ * Responses are returned as CompletableFuture. With request mode async
+ * (application.properties: app.api.request-mode), handlers run on the executor
+ * of asynchronous requests and Tomcat's request thread is released while the
+ * handler runs, status: 503 service unavailable when all threads are busy. In
+ * other modes, the future is completed on the request thread.
+ * 
  * @author sgra64, Antonia Billmeier
  *
  */
@@ -54,6 +89,19 @@ public interface CustomersDTOAPI {
 	/**
 	 * GET /customers
 	 * 
+	 * Customers are streamed to the response while the repository is iterated,
+	 * the response is not built in memory.
+	 * 
+	 * With parameters {@code after} or {@code limit}, a page of customers in
+	 * ascending id order is returned (keyset paging). The page starts after the
+	 * customer with id {@code after} (cursor) and contains up to {@code limit}
+	 * customers (default: 100, maximum: 1000). When more customers follow, the
+	 * cursor for the next page is returned in response header
+	 * {@code X-Next-Cursor} and the URL of the next page in header {@code Link}
+	 * with {@code rel="next"}.
+	 * 
+	 * @param after cursor, id after which the page starts (optional).
+	 * @param limit maximum number of customers in page (optional).
 	 * @return JSON Array with customers (compact).
 	 */
 
@@ -67,6 +115,7 @@ public interface CustomersDTOAPI {
 	)
 	@ApiResponses(value = { // also auto-derived by Swagger
 			@ApiResponse(responseCode = "200", description = "OK", content = @Content(mediaType = "application/json")),
+			@ApiResponse(responseCode = "400", description = "Bad Request"),
 			@ApiResponse(responseCode = "401", description = "Unauthorized"),
 			@ApiResponse(responseCode = "403", description = "Forbidden"),
 	// to remove "404" from docs, set
@@ -80,12 +129,166 @@ public interface CustomersDTOAPI {
 	@RequestMapping(method = RequestMethod.GET, value = "", // relative to interface @RequestMapping
 			produces = { "application/json" })
 	//
-	ResponseEntity<List<CustomerDTO>> getCustomers();
+	CompletableFuture<ResponseEntity<StreamingResponseBody>> getCustomers(
+			@RequestParam(value = "after", required = false) @ApiParam(value = "Cursor, id after which page starts") Long after,
+			@RequestParam(value = "limit", required = false) @ApiParam(value = "Page size (max. 1000)") Integer limit);
+
+	/**
+	 * GET /customers?format=ndjson
+	 * 
+	 * Customers are streamed as newline-delimited JSON (one JSON object per
+	 * line), e.g. for exports of large repositories.
+	 * 
+	 * @return newline-delimited JSON objects with customers.
+	 */
+
+	/*
+	 * Swagger API doc annotations:
+	 */
+	@Operation(summary = "Export all customers as newline-delimited JSON.", description = "Export all customers as newline-delimited JSON.", tags = {
+			"customers-dto-controller" })
+
+	/*
+	 * Spring REST Controller annotation:
+	 */
+	@RequestMapping(method = RequestMethod.GET, value = "", // relative to interface @RequestMapping
+			params = "format=ndjson", produces = { "application/x-ndjson" })
+	//
+	CompletableFuture<ResponseEntity<StreamingResponseBody>> getCustomersNdjson();
+
+	/**
+	 * GET /customers/search?lastName={prefix}, GET
+	 * /customers/search?firstName={prefix}
+	 * 
+	 * Search customers by lastName or firstName prefix, case-insensitive, using
+	 * the repository's name indexes. Exactly one of the parameters must be
+	 * given. Customers are returned in ascending name order, up to {@code limit}
+	 * customers (default: 100, maximum: 1000).
+	 * 
+	 * @param lastName  lastName prefix.
+	 * @param firstName firstName prefix.
+	 * @param limit     maximum number of customers returned (optional).
+	 * @return JSON Array with matching customers.
+	 */
+
+	/*
+	 * Swagger API doc annotations:
+	 */
+	@Operation(summary = "Search customers by name prefix.", description = "Search customers by lastName or firstName prefix (case-insensitive).", tags = {
+			"customers-dto-controller" })
+	@ApiResponses(value = { // also auto-derived by Swagger
+			@ApiResponse(responseCode = "200", description = "OK", content = @Content(mediaType = "application/json")),
+			@ApiResponse(responseCode = "400", description = "Bad Request"), })
+
+	/*
+	 * Spring REST Controller annotation:
+	 */
+	@RequestMapping(method = RequestMethod.GET, value = "search", // relative to interface @RequestMapping
+			produces = { "application/json" })
+	//
+	CompletableFuture<ResponseEntity<List<CustomerDTO>>> searchCustomers(
+			@RequestParam(value = "lastName", required = false) @ApiParam(value = "LastName prefix") String lastName,
+			@RequestParam(value = "firstName", required = false) @ApiParam(value = "FirstName prefix") String firstName,
+			@RequestParam(value = "limit", required = false) @ApiParam(value = "Maximum number of results (max. 1000)") Integer limit);
+
+	/**
+	 * GET /customers/lookup?contact={contact}
+	 * 
+	 * Reverse lookup of customers by contact using the repository's contact
+	 * index. Emails are matched case-insensitive, phone numbers by their digits
+	 * only, e.g. "+49 030-1234" matches "49030 1234".
+	 * 
+	 * @param contact contact to look up.
+	 * @return JSON Array with customers holding the contact, empty if none.
+	 */
+
+	/*
+	 * Swagger API doc annotations:
+	 */
+	@Operation(summary = "Find customers by contact.", description = "Find customers by email or phone number.", tags = {
+			"customers-dto-controller" })
+	@ApiResponses(value = { // also auto-derived by Swagger
+			@ApiResponse(responseCode = "200", description = "OK", content = @Content(mediaType = "application/json")),
+			@ApiResponse(responseCode = "400", description = "Bad Request"), })
+
+	/*
+	 * Spring REST Controller annotation:
+	 */
+	@RequestMapping(method = RequestMethod.GET, value = "lookup", // relative to interface @RequestMapping
+			produces = { "application/json" })
+	//
+	CompletableFuture<ResponseEntity<List<CustomerDTO>>> lookupCustomers(
+			@RequestParam(value = "contact") @ApiParam(value = "Email or phone number", required = true) String contact);
+
+	/**
+	 * GET /customers/status
+	 * 
+	 * Counts are maintained by the repository and returned in constant time,
+	 * e.g. for dashboards that poll status counts.
+	 * 
+	 * @return JSON Object with number of customers per status, e.g.
+	 *         {@code {"New":12,"InRegistration":3,"Active":140,"Suspended":2,"Deleted":0}}.
+	 */
+
+	/*
+	 * Swagger API doc annotations:
+	 */
+	@Operation(summary = "Return number of customers per status.", description = "Return number of customers per status.", tags = {
+			"customers-dto-controller" })
+
+	/*
+	 * Spring REST Controller annotation:
+	 */
+	@RequestMapping(method = RequestMethod.GET, value = "status", // relative to interface @RequestMapping
+			produces = { "application/json" })
+	//
+	CompletableFuture<ResponseEntity<Map<String, Long>>> getStatusCounts();
+
+	/**
+	 * GET /customers/status/{status}
+	 * 
+	 * Return page of customers with status in ascending id order, paging as
+	 * for GET /customers with parameters {@code after} and {@code limit}
+	 * (default: 100, maximum: 1000) and response headers {@code X-Next-Cursor}
+	 * and {@code Link}.
+	 * 
+	 * @param status status: New, InRegistration, Active, Suspended, Deleted.
+	 * @param after  cursor, id after which the page starts (optional).
+	 * @param limit  maximum number of customers in page (optional).
+	 * @return JSON Array with customers with status.
+	 */
+
+	/*
+	 * Swagger API doc annotations:
+	 */
+	@Operation(summary = "Return customers with status.", description = "Return page of customers with status.", tags = {
+			"customers-dto-controller" })
+	@ApiResponses(value = { // also auto-derived by Swagger
+			@ApiResponse(responseCode = "200", description = "OK", content = @Content(mediaType = "application/json")),
+			@ApiResponse(responseCode = "400", description = "Bad Request"), })
+
+	/*
+	 * Spring REST Controller annotation:
+	 */
+	@RequestMapping(method = RequestMethod.GET, value = "status/{status}", // relative to interface @RequestMapping
+			produces = { "application/json" })
+	//
+	CompletableFuture<ResponseEntity<List<CustomerDTO>>> getCustomersByStatus(
+			@PathVariable("status") @ApiParam(value = "Customer status", required = true) String status,
+			@RequestParam(value = "after", required = false) @ApiParam(value = "Cursor, id after which page starts") Long after,
+			@RequestParam(value = "limit", required = false) @ApiParam(value = "Page size (max. 1000)") Integer limit);
 
 	/**
 	 * GET /customers/{id}
 	 * 
-	 * @return JSON Array with customers (compact).
+	 * The JSON of the customer is written from a cache of pre-serialized JSON,
+	 * unchanged customers are not serialized again. The response carries an
+	 * {@code ETag} header, requests with a matching {@code If-None-Match} header
+	 * are answered with 304 (not modified) without body.
+	 * 
+	 * @param id customer id.
+	 * @return JSON object of customer.
+	 * @throws IOException when writing the JSON fails.
 	 */
 
 	/*
@@ -93,6 +296,10 @@ public interface CustomersDTOAPI {
 	 */
 	@Operation(summary = "Return customer with {id} from repository.", description = "Return customer with {id} from repository.", tags = {
 			"customers-dto-controller" })
+	@ApiResponses(value = { // also auto-derived by Swagger
+			@ApiResponse(responseCode = "200", description = "OK", content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomerDTO.class))),
+			@ApiResponse(responseCode = "304", description = "Not Modified"),
+			@ApiResponse(responseCode = "404", description = "Not Found"), })
 
 	/*
 	 * Spring REST Controller annotation:
@@ -100,8 +307,8 @@ public interface CustomersDTOAPI {
 	@RequestMapping(method = RequestMethod.GET, value = "{id}", // relative to interface @RequestMapping
 			produces = { "application/json" })
 	//
-	ResponseEntity<CustomerDTO> getCustomer(
-			@PathVariable("id") @ApiParam(value = "Customer id", required = true) long id);
+	CompletableFuture<ResponseEntity<byte[]>> getCustomer(
+			@PathVariable("id") @ApiParam(value = "Customer id", required = true) long id) throws IOException;
 
 	/**
 	 * POST /customers
@@ -118,6 +325,10 @@ public interface CustomersDTOAPI {
 	 * objects were accepted. Partial acceptance of objects from the request is
 	 * possible, but error 409 is returned with the array of rejected objects.
 	 * 
+	 * Objects are validated before any object is inserted. A request containing
+	 * an invalid object is rejected entirely with error 400 (bad request), valid
+	 * objects are inserted in one atomic bulk operation.
+	 * 
 	 * @param jsonMap array of maps with raw JSON {@code <key,obj>}-data.
 	 * @return JSON array with the rejected JSON objects, empty array [] if all
 	 *         objects were accepted.
@@ -143,7 +354,7 @@ public interface CustomersDTOAPI {
 			produces = { "application/json" })
 	@ResponseStatus
 	@ResponseBody
-	public ResponseEntity<List<CustomerDTO>> postCustomers(@RequestBody List<CustomerDTO> dtos);
+	public CompletableFuture<ResponseEntity<List<CustomerDTO>>> postCustomers(@RequestBody List<CustomerDTO> dtos);
 
 	/**
 	 * PUT /customers
@@ -154,6 +365,8 @@ public interface CustomersDTOAPI {
 	 * 
 	 * JSON data missing id or with id that are not found are rejected. Rejected
 	 * JSON objects are returned in the response with error 404 (not found).
+	 * Changes of all other objects are applied in one pass: names are replaced,
+	 * new contacts are merged into existing contacts.
 	 * 
 	 * Status 202 (accepted) is returned with empty array of conflicts when all
 	 * updates could be performed. Partial acceptance of updates is possible for
@@ -185,7 +398,79 @@ public interface CustomersDTOAPI {
 	)
 	@ResponseStatus
 	@ResponseBody
-	public ResponseEntity<List<CustomerDTO>> putCustomers(@RequestBody List<CustomerDTO> dtos);
+	public CompletableFuture<ResponseEntity<List<CustomerDTO>>> putCustomers(@RequestBody List<CustomerDTO> dtos);
+
+	/**
+	 * POST /customers?mode=stream
+	 * 
+	 * Add new customers like POST /customers, but the JSON array in the request
+	 * body is read and processed object by object while it is received, memory
+	 * use does not grow with the size of the request. Each object is validated
+	 * and stored as soon as it was read, invalid objects and objects with ids
+	 * already in use are rejected individually.
+	 * 
+	 * Status 201 (created) is returned with empty array when all objects were
+	 * accepted, 409 (conflict) with the array of rejects otherwise. Status 400
+	 * (bad request) is returned when the body is not a JSON array of objects,
+	 * objects read before the error are kept. Response header
+	 * {@code X-Rejected-Count} contains the total number of rejects, the array
+	 * reports at most 1000 rejects.
+	 * 
+	 * @return JSON array with rejects: index of rejected object in the request,
+	 *         customer id and reason.
+	 * @throws IOException when reading the request fails.
+	 */
+
+	/*
+	 * Swagger API doc annotations:
+	 */
+	@Operation(summary = "Add new customers to repository from streamed request.", description = "Add new customers to repository from streamed request.", tags = {
+			"customers-dto-controller" })
+	@ApiResponses(value = { // also auto-derived by Swagger
+			@ApiResponse(responseCode = "201", description = "Created"),
+			@ApiResponse(responseCode = "400", description = "Bad Request"),
+			@ApiResponse(responseCode = "409", description = "Conflict", content = @Content(mediaType = "application/json")), })
+	/*
+	 * Spring REST Controller annotation:
+	 */
+	@RequestMapping(method = RequestMethod.POST, value = "", // relative to interface @RequestMapping
+			params = "mode=stream", consumes = { "application/json" }, produces = { "application/json" })
+	@ResponseBody
+	public CompletableFuture<ResponseEntity<List<RejectDTO>>> postCustomersStream() throws IOException;
+
+	/**
+	 * PUT /customers?mode=stream
+	 * 
+	 * Update existing customers like PUT /customers, but the JSON array in the
+	 * request body is read and processed object by object while it is received.
+	 * Invalid objects and objects with ids that are not found are rejected
+	 * individually.
+	 * 
+	 * Status 202 (accepted) is returned with empty array when all updates were
+	 * performed, 409 (conflict) with the array of rejects otherwise, 400 (bad
+	 * request) when the body is not a JSON array of objects.
+	 * 
+	 * @return JSON array with rejects: index of rejected object in the request,
+	 *         customer id and reason.
+	 * @throws IOException when reading the request fails.
+	 */
+
+	/*
+	 * Swagger API doc annotations:
+	 */
+	@Operation(summary = "Update existing customers in repository from streamed request.", description = "Update existing customers in repository from streamed request.", tags = {
+			"customers-dto-controller" })
+	@ApiResponses(value = { // also auto-derived by Swagger
+			@ApiResponse(responseCode = "202", description = "Accepted"),
+			@ApiResponse(responseCode = "400", description = "Bad Request"),
+			@ApiResponse(responseCode = "409", description = "Conflict", content = @Content(mediaType = "application/json")), })
+	/*
+	 * Spring REST Controller annotation:
+	 */
+	@RequestMapping(method = RequestMethod.PUT, value = "", // relative to interface @RequestMapping
+			params = "mode=stream", consumes = { "application/json" }, produces = { "application/json" })
+	@ResponseBody
+	public CompletableFuture<ResponseEntity<List<RejectDTO>>> putCustomersStream() throws IOException;
 
 	/**
 	 * DELETE /customers/{id}
@@ -217,7 +502,42 @@ public interface CustomersDTOAPI {
 	@RequestMapping(method = RequestMethod.DELETE, value = "{id}" // relative to interface @RequestMapping
 	)
 	@ResponseStatus
-	public ResponseEntity<?> deleteCustomer(@PathVariable("id") long id);
+	public CompletableFuture<ResponseEntity<Void>> deleteCustomer(@PathVariable("id") long id);
+
+	/**
+	 * DELETE /customers?ids=1,2,3 or DELETE /customers?from=100&amp;to=199
+	 * 
+	 * Delete existing customers by a list of ids or by an id range (inclusive) in
+	 * one pass. Ids that are not found are ignored. Either ids or a range must be
+	 * given, not both.
+	 * 
+	 * Status 202 (accepted) is returned with the number of deleted customers in
+	 * response header X-Deleted-Count.
+	 * 
+	 * @param ids  ids of objects to delete.
+	 * @param from first id of range to delete.
+	 * @param to   last id of range to delete.
+	 * @return status code: 202 (accepted), 400 (bad request).
+	 */
+
+	/*
+	 * Swagger API doc annotations:
+	 */
+	@Operation(summary = "Delete customers by ids or id range from repository.", description = "Delete customers by ids or id range from repository.", tags = {
+			"customers-dto-controller" })
+	@ApiResponses(value = { // also auto-derived by Swagger
+			@ApiResponse(responseCode = "202", description = "Accepted"),
+			@ApiResponse(responseCode = "400", description = "Bad Request") })
+	/*
+	 * Spring REST Controller annotation:
+	 */
+	@RequestMapping(method = RequestMethod.DELETE, value = "" // relative to interface @RequestMapping
+	)
+	@ResponseStatus
+	public CompletableFuture<ResponseEntity<Void>> deleteCustomers(
+			@RequestParam(value = "ids", required = false) @ApiParam(value = "Ids, comma-separated") List<Long> ids,
+			@RequestParam(value = "from", required = false) @ApiParam(value = "First id of range") Long from,
+			@RequestParam(value = "to", required = false) @ApiParam(value = "Last id of range") Long to);
 
 	/*
 	 * Alternative using DTO serialization.
@@ -1,156 +1,653 @@
 package de.freerider.restapi;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.servlet.http.HttpServletRequest;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
 
 import de.freerider.datamodel.Customer;
 import de.freerider.repository.CustomerRepository;
+import de.freerider.repository.IdAllocator;
 import de.freerider.restapi.dto.CustomerDTO;
+import de.freerider.restapi.dto.CustomerValidator;
+import de.freerider.restapi.dto.ProjectionCache;
+import de.freerider.restapi.dto.ResponseCache;
+import de.freerider.restapi.dto.RejectDTO;
 
 @RestController
 public class CustomersDTOController implements CustomersDTOAPI {
 
+	private static final Logger log = LoggerFactory.getLogger(CustomersDTOController.class);
+
+	/*
+	 * page size for GET /customers with cursor, default and maximum.
+	 */
+	private static final int DEFAULT_PAGE_SIZE = 100;
+
+	private static final int MAX_PAGE_SIZE = 1000;
+
+	/*
+	 * response header with cursor of next page.
+	 */
+	private static final String NEXT_CURSOR = "X-Next-Cursor";
+
+	/*
+	 * streamed requests: customers inserted per bulk insert, maximum of rejects
+	 * reported in the response and header with total number of rejects.
+	 */
+	private static final int STREAM_CHUNK_SIZE = 1000;
+
+	private static final int MAX_REPORTED_REJECTS = 1000;
+
+	private static final String REJECTED_COUNT = "X-Rejected-Count";
+
+	/*
+	 * response header with number of customers deleted by bulk delete.
+	 */
+	private static final String DELETED_COUNT = "X-Deleted-Count";
+
 	@Autowired
 	private CustomerRepository customerRepository;
 	//
 	@Autowired
+	private IdAllocator idAllocator;
+	//
+	@Autowired
+	private ProjectionCache projections;
+	//
+	@Autowired
+	private ResponseCache responseCache;
+	//
+	@Autowired
 	private ApplicationContext context;
 	//
 	private final HttpServletRequest request;
+	//
+	private final Executor handlerExecutor;
+
+	//
+	private final ObjectMapper objectMapper;
+	//
+	private final ObjectWriter dtoWriter;
+	//
+	private final ObjectReader dtoReader;
 
 	/**
 	 * Constructor.
 	 * 
-	 * @param request HTTP request object
+	 * @param objectMapper entry point to JSON tree for the Jackson library
+	 * @param request      HTTP request object
+	 * @param executors    selects the executor handlers run on
 	 */
-	public CustomersDTOController(HttpServletRequest request) {
+	public CustomersDTOController(ObjectMapper objectMapper, HttpServletRequest request,
+			RequestExecutorConfig executors) {
+		this.objectMapper = objectMapper;
+		// streamed DTO are flushed by the generator's buffer, not per DTO
+		this.dtoWriter = objectMapper.writerFor(CustomerDTO.class)
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		this.dtoReader = objectMapper.readerFor(CustomerDTO.class);
 		this.request = request;
+		this.handlerExecutor = executors.handlerExecutor();
 	}
 
 	@Override
-	public ResponseEntity<List<CustomerDTO>> getCustomers() {
-		ResponseEntity<List<CustomerDTO>> re = null;
-		Iterable<Customer> customers = customerRepository.findAll();
-		System.err.println(request.getMethod() + " " + request.getRequestURI());
-		List<CustomerDTO> list = new ArrayList<CustomerDTO>();
-		for (Customer c : customers) {
-			CustomerDTO dto = new CustomerDTO(c);
-			list.add(dto);
-		}
-		re = new ResponseEntity<List<CustomerDTO>>(list, HttpStatus.OK);
-		return re;
+	public CompletableFuture<ResponseEntity<StreamingResponseBody>> getCustomers(Long after, Integer limit) {
+		return handle(() -> {
+			log.info("method={} uri={}", request.getMethod(), request.getRequestURI());
+			if (after == null && limit == null) {
+				return new ResponseEntity<StreamingResponseBody>(streamArray(customerRepository.findAll(), false),
+						HttpStatus.OK);
+			}
+			int size = limit != null ? limit : DEFAULT_PAGE_SIZE;
+			if (size < 1 || size > MAX_PAGE_SIZE) {
+				return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
+			}
+			List<Customer> page = customerRepository.findPage(after != null ? after : -1, size);
+			HttpHeaders headers = new HttpHeaders();
+			if (page.size() == size) {
+				long next = page.get(size - 1).getId();
+				if (customerRepository.hasPageAfter(next)) {
+					setNextPage(headers, next, size);
+				}
+			}
+			return new ResponseEntity<StreamingResponseBody>(streamArray(page, true), headers, HttpStatus.OK);
+		});
 	}
 
 	@Override
-	public ResponseEntity<CustomerDTO> getCustomer(@PathVariable("id") long id) {
-		ResponseEntity<CustomerDTO> re = null;
-		System.err.println(request.getMethod() + " " + request.getRequestURI());
-		Optional<Customer> c = customerRepository.findById(id);
-		if (c.isPresent()) {
-			CustomerDTO dto = new CustomerDTO(c.get());
-			re = new ResponseEntity<CustomerDTO>(dto, HttpStatus.OK);
-		} else {
-			System.err.println("No Customer with id: " + id + " was found.");
-			re = new ResponseEntity<CustomerDTO>(HttpStatus.INTERNAL_SERVER_ERROR);
-		}
-		return re;
+	public CompletableFuture<ResponseEntity<StreamingResponseBody>> getCustomersNdjson() {
+		return handle(() -> {
+			log.info("method={} uri={}", request.getMethod(), request.getRequestURI());
+			Iterable<Customer> customers = customerRepository.findAll();
+			StreamingResponseBody body = out -> {
+				JsonGenerator gen = createGenerator(out);
+				gen.setRootValueSeparator(null);
+				for (Customer c : customers) {
+					dtoWriter.writeValue(gen, new CustomerDTO(projections.project(c)));
+					gen.writeRaw('\n');
+				}
+				gen.close();
+			};
+			return new ResponseEntity<StreamingResponseBody>(body, HttpStatus.OK);
+		});
 	}
 
 	@Override
-	public ResponseEntity<List<CustomerDTO>> postCustomers(@RequestBody List<CustomerDTO> dtos) {
-		System.err.println("POST /customers");
-		List<CustomerDTO> unaccepted = new ArrayList<CustomerDTO>();
-		if (dtos == null) {
-			return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
-		}
-		for (CustomerDTO dto : dtos) {
-			dto.print();
-			Optional<Customer> customer = dto.create();
-			if (customer.isPresent()) {
-				if (customerRepository.findById(customer.get().getId()).isPresent()) {
-					System.err.println("Error: Id is already used.");
+	public CompletableFuture<ResponseEntity<List<CustomerDTO>>> searchCustomers(String lastName, String firstName,
+			Integer limit) {
+		return handle(() -> {
+			log.info("method={} uri={}", request.getMethod(), request.getRequestURI());
+			int size = limit != null ? limit : DEFAULT_PAGE_SIZE;
+			if ((lastName == null) == (firstName == null) || size < 1 || size > MAX_PAGE_SIZE) {
+				return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
+			}
+			List<Customer> hits = lastName != null ? customerRepository.findByLastNamePrefix(lastName, size)
+					: customerRepository.findByFirstNamePrefix(firstName, size);
+			return new ResponseEntity<List<CustomerDTO>>(toDTOs(hits), HttpStatus.OK);
+		});
+	}
+
+	@Override
+	public CompletableFuture<ResponseEntity<List<CustomerDTO>>> lookupCustomers(String contact) {
+		return handle(() -> {
+			log.info("method={} uri={}", request.getMethod(), request.getRequestURI());
+			if (contact.isBlank()) {
+				return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
+			}
+			List<Customer> hits = customerRepository.findByContact(contact);
+			return new ResponseEntity<List<CustomerDTO>>(toDTOs(hits), HttpStatus.OK);
+		});
+	}
+
+	@Override
+	public CompletableFuture<ResponseEntity<Map<String, Long>>> getStatusCounts() {
+		return handle(() -> {
+			log.info("method={} uri={}", request.getMethod(), request.getRequestURI());
+			Map<String, Long> counts = new LinkedHashMap<String, Long>();
+			for (Customer.Status status : Customer.Status.values()) {
+				counts.put(status.name(), customerRepository.countByStatus(status));
+			}
+			return new ResponseEntity<Map<String, Long>>(counts, HttpStatus.OK);
+		});
+	}
+
+	@Override
+	public CompletableFuture<ResponseEntity<List<CustomerDTO>>> getCustomersByStatus(String status, Long after,
+			Integer limit) {
+		return handle(() -> {
+			log.info("method={} uri={}", request.getMethod(), request.getRequestURI());
+			Customer.Status st = null;
+			for (Customer.Status s : Customer.Status.values()) {
+				st = s.name().equalsIgnoreCase(status) ? s : st;
+			}
+			int size = limit != null ? limit : DEFAULT_PAGE_SIZE;
+			if (st == null || size < 1 || size > MAX_PAGE_SIZE) {
+				return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
+			}
+			List<Customer> page = customerRepository.findByStatus(st, after != null ? after : -1, size);
+			HttpHeaders headers = new HttpHeaders();
+			if (page.size() == size) {
+				long next = page.get(size - 1).getId();
+				if (customerRepository.hasStatusPageAfter(st, next)) {
+					setNextPage(headers, next, size);
+				}
+			}
+			return new ResponseEntity<List<CustomerDTO>>(toDTOs(page), headers, HttpStatus.OK);
+		});
+	}
+
+	@Override
+	public CompletableFuture<ResponseEntity<byte[]>> getCustomer(@PathVariable("id") long id) throws IOException {
+		return handle(() -> {
+			log.info("method={} uri={}", request.getMethod(), request.getRequestURI());
+			Optional<Customer> c = customerRepository.findById(id);
+			if (c.isEmpty()) {
+				log.debug("customer not found: id={}", id);
+				return new ResponseEntity<>(null, HttpStatus.NOT_FOUND);
+			}
+			ResponseCache.Entry entry = responseCache.get(c.get());
+			HttpHeaders headers = new HttpHeaders();
+			headers.set(HttpHeaders.ETAG, entry.getETag());
+			if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), entry.getETag())) {
+				return new ResponseEntity<>(null, headers, HttpStatus.NOT_MODIFIED);
+			}
+			headers.setContentType(MediaType.APPLICATION_JSON);
+			ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+			responseCache.write(entry, body);
+			return new ResponseEntity<>(body.toByteArray(), headers, HttpStatus.OK);
+		});
+	}
+
+	/**
+	 * POST /customers
+	 * 
+	 * All DTO are validated before any customer is inserted, a request with an
+	 * invalid DTO is rejected entirely (400). Valid customers are inserted with a
+	 * single bulk insert, DTO with conflicting ids are returned (409).
+	 */
+	@Override
+	public CompletableFuture<ResponseEntity<List<CustomerDTO>>> postCustomers(@RequestBody List<CustomerDTO> dtos) {
+		return handle(() -> {
+			log.info("method={} uri={}", request.getMethod(), request.getRequestURI());
+			if (dtos == null) {
+				return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
+			}
+			List<Customer> customers = new ArrayList<Customer>(dtos.size());
+			Map<Customer, CustomerDTO> source = new IdentityHashMap<Customer, CustomerDTO>(dtos.size());
+			for (CustomerDTO dto : dtos) {
+				Optional<Customer> customer = dto.create(idAllocator);
+				if (customer.isEmpty()) {
+					return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
+				}
+				customers.add(customer.get());
+				source.put(customer.get(), dto);
+			}
+			List<CustomerDTO> unaccepted = new ArrayList<CustomerDTO>();
+			for (Customer conflict : customerRepository.insertAll(customers)) {
+				unaccepted.add(source.get(conflict));
+			}
+			log.info("customers created={} rejected={} (id already used)", customers.size() - unaccepted.size(),
+					unaccepted.size());
+			if (unaccepted.isEmpty()) {
+				return new ResponseEntity<>(unaccepted, HttpStatus.CREATED);
+			} else {
+				return new ResponseEntity<>(unaccepted, HttpStatus.CONFLICT);
+			}
+		});
+	}
+
+	/**
+	 * PUT /customers
+	 */
+	@Override
+	public CompletableFuture<ResponseEntity<List<CustomerDTO>>> putCustomers(@RequestBody List<CustomerDTO> dtos) {
+		return handle(() -> {
+			log.info("method={} uri={}", request.getMethod(), request.getRequestURI());
+			//
+			List<CustomerDTO> unaccepted = new ArrayList<CustomerDTO>();
+			if (dtos == null) {
+				return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
+			}
+			List<Customer> changes = new ArrayList<Customer>(dtos.size());
+			List<CustomerDTO> accepted = new ArrayList<CustomerDTO>(dtos.size());
+			for (CustomerDTO dto : dtos) {
+				Optional<Customer> customerOpt = dto.create();
+				if (customerOpt.isEmpty()) {
 					unaccepted.add(dto);
 				} else {
-					customerRepository.save(customer.get());
-					System.out.println("New Customer created.");
+					changes.add(customerOpt.get());
+					accepted.add(dto);
+				}
+			}
+			// apply all changes in one pass, report records not found
+			List<CustomerRepository.UpdateResult> results = customerRepository.updateAll(changes);
+			List<CustomerDTO> notFound = new ArrayList<CustomerDTO>();
+			for (int i = 0; i < results.size(); i++) {
+				if (notFound(changes.get(i).getId(), results.get(i))) {
+					notFound.add(accepted.get(i));
+				}
+			}
+			if (!notFound.isEmpty()) {
+				return new ResponseEntity<>(notFound, HttpStatus.NOT_FOUND);
+			}
+			if (!unaccepted.isEmpty()) {
+				return new ResponseEntity<>(unaccepted, HttpStatus.CONFLICT);
+			}
+			return new ResponseEntity<>(unaccepted, HttpStatus.ACCEPTED);
+		});
+	}
+
+	/**
+	 * POST /customers?mode=stream
+	 */
+	@Override
+	public CompletableFuture<ResponseEntity<List<RejectDTO>>> postCustomersStream() throws IOException {
+		return handle(() -> {
+			log.info("method={} uri={} mode=stream", request.getMethod(), request.getRequestURI());
+			List<Customer> chunk = new ArrayList<Customer>(STREAM_CHUNK_SIZE);
+			Map<Customer, Long> positions = new IdentityHashMap<Customer, Long>(STREAM_CHUNK_SIZE);
+			Rejects rejects = new Rejects();
+			try {
+				long n = readStream((index, dto) -> {
+					Optional<Customer> customer = dto.create(idAllocator);
+					if (customer.isEmpty()) {
+						rejects.add(index, dto, dto.rejects());
+						return;
+					}
+					chunk.add(customer.get());
+					positions.put(customer.get(), index);
+					if (chunk.size() == STREAM_CHUNK_SIZE) {
+						insertChunk(chunk, positions, rejects);
+					}
+				}, rejects);
+				insertChunk(chunk, positions, rejects);
+				log.info("customers created={} rejected={}", n - rejects.count, rejects.count);
+			} catch (JsonProcessingException e) {
+				insertChunk(chunk, positions, rejects); // keep records read before the error
+				return rejects.response(HttpStatus.BAD_REQUEST);
+			}
+			return rejects.response(rejects.count == 0 ? HttpStatus.CREATED : HttpStatus.CONFLICT);
+		});
+	}
+
+	/**
+	 * PUT /customers?mode=stream
+	 */
+	@Override
+	public CompletableFuture<ResponseEntity<List<RejectDTO>>> putCustomersStream() throws IOException {
+		return handle(() -> {
+			log.info("method={} uri={} mode=stream", request.getMethod(), request.getRequestURI());
+			Rejects rejects = new Rejects();
+			try {
+				long n = readStream((index, dto) -> {
+					Optional<Customer> customer = dto.create();
+					if (customer.isEmpty()) {
+						rejects.add(index, dto, dto.rejects());
+					} else if (notFound(customer.get().getId(), customerRepository.update(customer.get()))) {
+						rejects.add(index, dto, "not found");
+					}
+				}, rejects);
+				log.info("customers updated={} rejected={}", n - rejects.count, rejects.count);
+			} catch (JsonProcessingException e) {
+				return rejects.response(HttpStatus.BAD_REQUEST);
+			}
+			return rejects.response(rejects.count == 0 ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT);
+		});
+	}
+
+	@Override
+	public CompletableFuture<ResponseEntity<Void>> deleteCustomer(@PathVariable("id") long id) {
+		return handle(() -> {
+			log.info("method={} uri={}", request.getMethod(), request.getRequestURI());
+			if (customerRepository.findById(id).isPresent()) {
+				customerRepository.deleteById(id);
+				projections.evict(id);
+				responseCache.invalidate(id);
+				log.debug("customer deleted: id={}", id);
+				return new ResponseEntity<>(null, HttpStatus.ACCEPTED); // status 202
+			} else {
+				return new ResponseEntity<>(null, HttpStatus.NOT_FOUND);
+			}
+		});
+	}
+
+	@Override
+	public CompletableFuture<ResponseEntity<Void>> deleteCustomers(List<Long> ids, Long from, Long to) {
+		return handle(() -> {
+			log.info("method={} uri={}", request.getMethod(), request.getRequestURI());
+			List<Long> deleted;
+			if (ids != null && from == null && to == null) {
+				if (ids.contains(null)) {
+					return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
 				}
+				deleted = customerRepository.removeAllById(ids);
+			} else if (ids == null && from != null && to != null && from <= to) {
+				deleted = customerRepository.removeRange(from, to);
 			} else {
 				return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
 			}
+			for (long id : deleted) {
+				projections.evict(id);
+				responseCache.invalidate(id);
+			}
+			log.debug("customers deleted: {}", deleted.size());
+			HttpHeaders headers = new HttpHeaders();
+			headers.set(DELETED_COUNT, Integer.toString(deleted.size()));
+			return new ResponseEntity<>(null, headers, HttpStatus.ACCEPTED);
+		});
+	}
+
+	/*
+	 * private methods
+	 */
+
+	/**
+	 * Request handler of an endpoint.
+	 */
+	private interface Handler<T, E extends Exception> {
+		ResponseEntity<T> handle() throws E;
+	}
+
+	/**
+	 * Run request handler. In request mode async, the handler runs on the
+	 * executor of asynchronous requests with the request's attributes (e.g. the
+	 * request proxy) bound to its thread, the request is answered with 503
+	 * (service unavailable) when the executor rejects the handler. In other
+	 * modes, the handler runs on the request thread.
+	 *
+	 * @return future completed with the handler's response.
+	 * @throws E when the handler fails on the request thread.
+	 */
+	private <T, E extends Exception> CompletableFuture<ResponseEntity<T>> handle(Handler<T, E> handler) throws E {
+		if (handlerExecutor == null) {
+			return CompletableFuture.completedFuture(handler.handle());
 		}
-		if (unaccepted.isEmpty()) {
-			return new ResponseEntity<>(unaccepted, HttpStatus.CREATED);
-		} else {
-			return new ResponseEntity<>(unaccepted, HttpStatus.CONFLICT);
+		RequestAttributes attributes = RequestContextHolder.currentRequestAttributes();
+		CompletableFuture<ResponseEntity<T>> response = new CompletableFuture<ResponseEntity<T>>();
+		try {
+			handlerExecutor.execute(() -> {
+				RequestContextHolder.setRequestAttributes(attributes);
+				try {
+					response.complete(handler.handle());
+				} catch (Throwable e) {
+					response.completeExceptionally(e);
+				} finally {
+					RequestContextHolder.resetRequestAttributes();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			log.warn("request rejected, handler threads busy: method={} uri={}", request.getMethod(),
+					request.getRequestURI());
+			return CompletableFuture.completedFuture(new ResponseEntity<T>(HttpStatus.SERVICE_UNAVAILABLE));
 		}
+		return response;
 	}
 
 	/**
-	 * PUT /customers
+	 * Invalidate cached response of updated customer and test whether the
+	 * customer was not found.
+	 * 
+	 * @return true if no customer with the id exists.
 	 */
-	@Override
-	public ResponseEntity<List<CustomerDTO>> putCustomers(@RequestBody List<CustomerDTO> dtos) {
-		// TODO: replace by logger
-		System.err.println(request.getMethod() + " " + request.getRequestURI());
-		//
-		List<CustomerDTO> unaccepted = new ArrayList<CustomerDTO>();
-		if (dtos == null) {
-			return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
+	private boolean notFound(long id, CustomerRepository.UpdateResult result) {
+		switch (result) {
+		case UPDATED:
+			responseCache.invalidate(id);
+			log.debug("customer updated: id={}", id);
+			return false;
+		case NOT_FOUND:
+			log.debug("customer not found: id={}", id);
+			return true;
+		default:
+			return false;
 		}
-		for (CustomerDTO dto : dtos) {
-			dto.print();
-			Optional<Customer> customerOpt = dto.create();
-			CustomerDTO.print(customerOpt);
-			if (customerOpt.isEmpty()) {
-				unaccepted.add(dto);
-			} else {
-				Optional<Customer> customer = customerRepository.findById(customerOpt.get().getId());
-				if (customer.isPresent()) {
-					// update name
-					if (!customer.get().getName().equals(customerOpt.get().getName())) {
-						customer.get().setName(customerOpt.get().getName());
-						System.out.println("Updated name.");
-					}
-					// update contacts
-					if (!customer.get().getContacts().equals(customerOpt.get().getContacts())) {
-						for (String contact : customerOpt.get().getContacts()) {
-							customer.get().addContact(contact);
+	}
+
+	/**
+	 * Receiver of DTO read from a streamed request.
+	 */
+	private interface DTOConsumer {
+		void accept(long index, CustomerDTO dto);
+	}
+
+	/**
+	 * Read JSON array of DTO from the request body token by token and pass each
+	 * DTO to the consumer as soon as it was read. Objects with values of wrong
+	 * type are rejected, reading continues with the next object.
+	 * 
+	 * @return number of DTO read, including rejected objects.
+	 * @throws JsonProcessingException if the body is not a JSON array of objects.
+	 */
+	private long readStream(DTOConsumer consumer, Rejects rejects) throws IOException {
+		try (JsonParser parser = objectMapper.getFactory().createParser(request.getInputStream())) {
+			if (parser.nextToken() != JsonToken.START_ARRAY) {
+				throw new JsonParseException(parser, "JSON array expected");
+			}
+			JsonStreamContext array = parser.getParsingContext();
+			long index = 0;
+			for (JsonToken t = parser.nextToken(); t != JsonToken.END_ARRAY; t = parser.nextToken()) {
+				if (t != JsonToken.START_OBJECT) {
+					throw new JsonParseException(parser, "JSON object expected");
+				}
+				CustomerDTO dto;
+				try {
+					dto = dtoReader.readValue(parser);
+				} catch (MismatchedInputException e) {
+					// value of wrong type: reject record, continue after its END_OBJECT
+					rejects.add(index++, null, "invalid: " + parser.getCurrentName());
+					while (parser.getParsingContext() != array) {
+						if (parser.nextToken() == null) {
+							throw e;
 						}
-						System.out.println("Updated contacts.");
 					}
-				} else {
-					System.out.println("Id not found.");
-					return new ResponseEntity<>(null, HttpStatus.NOT_FOUND);
+					continue;
 				}
+				consumer.accept(index++, dto);
 			}
-			System.out.println();
+			return index;
 		}
-		if (!unaccepted.isEmpty()) {
-			return new ResponseEntity<>(unaccepted, HttpStatus.CONFLICT);
+	}
+
+	/**
+	 * Insert chunk of customers read from a stream, conflicts are rejected.
+	 */
+	private void insertChunk(List<Customer> chunk, Map<Customer, Long> positions, Rejects rejects) {
+		for (Customer conflict : customerRepository.insertAll(chunk)) {
+			rejects.add(positions.get(conflict), null, "conflict: id " + conflict.getId() + " already used");
 		}
-		return new ResponseEntity<>(unaccepted, HttpStatus.ACCEPTED);
+		chunk.clear();
+		positions.clear();
 	}
 
-	@Override
-	public ResponseEntity<?> deleteCustomer(@PathVariable("id") long id) {
-		System.err.println("DELETE /customers/" + id);
-		if (customerRepository.findById(id).isPresent()) {
-			customerRepository.deleteById(id);
-			System.out.println("Customer deleted.");
-			return new ResponseEntity<>(null, HttpStatus.ACCEPTED); // status 202
-		} else {
-			return new ResponseEntity<>(null, HttpStatus.NOT_FOUND);
+	/**
+	 * Rejected records of a streamed request, at most MAX_REPORTED_REJECTS are
+	 * reported in the response, the total is reported in header
+	 * X-Rejected-Count.
+	 */
+	private static class Rejects {
+		final List<RejectDTO> reported = new ArrayList<RejectDTO>();
+		long count = 0;
+
+		/*
+		 * reason is only formatted for reported rejects.
+		 */
+		void add(long index, CustomerDTO dto, int rejected) {
+			if (reported.size() < MAX_REPORTED_REJECTS) {
+				reported.add(new RejectDTO(index, dto, CustomerValidator.describe(rejected)));
+			}
+			count++;
 		}
+
+		void add(long index, CustomerDTO dto, String reason) {
+			if (reported.size() < MAX_REPORTED_REJECTS) {
+				reported.add(new RejectDTO(index, dto, reason));
+			}
+			count++;
+		}
+
+		ResponseEntity<List<RejectDTO>> response(HttpStatus status) {
+			HttpHeaders headers = new HttpHeaders();
+			headers.set(REJECTED_COUNT, Long.toString(count));
+			return new ResponseEntity<List<RejectDTO>>(reported, headers, status);
+		}
+	}
+
+	/**
+	 * Set response headers with cursor and URL of next page.
+	 */
+	private void setNextPage(HttpHeaders headers, long next, int size) {
+		String nextUrl = ServletUriComponentsBuilder.fromCurrentRequest().replaceQueryParam("after", next)
+				.replaceQueryParam("limit", size).toUriString();
+		headers.set(NEXT_CURSOR, Long.toString(next));
+		headers.set(HttpHeaders.LINK, "<" + nextUrl + ">; rel=\"next\"");
+	}
+
+	/**
+	 * Test whether If-None-Match header value matches ETag, the header may list
+	 * multiple (weak) tags or "*".
+	 */
+	private static boolean matches(String ifNoneMatch, String etag) {
+		if (ifNoneMatch != null) {
+			for (String tag : ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				tag = tag.startsWith("W/") ? tag.substring(2) : tag;
+				if (tag.equals(etag) || tag.equals("*"))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	private List<CustomerDTO> toDTOs(List<Customer> customers) {
+		List<CustomerDTO> dtos = new ArrayList<CustomerDTO>(customers.size());
+		for (Customer c : customers) {
+			dtos.add(new CustomerDTO(projections.get(c)));
+		}
+		return dtos;
+	}
+
+	/**
+	 * Return response body that streams customers as JSON array, projections are
+	 * cached for pages but not for exports of all customers.
+	 */
+	private StreamingResponseBody streamArray(Iterable<Customer> customers, boolean cache) {
+		return out -> {
+			JsonGenerator gen = createGenerator(out);
+			gen.writeStartArray();
+			for (Customer c : customers) {
+				dtoWriter.writeValue(gen, new CustomerDTO(cache ? projections.get(c) : projections.project(c)));
+			}
+			gen.writeEndArray();
+			gen.close();
+		};
+	}
+
+	/**
+	 * Create JSON generator writing to response stream, which is not closed by
+	 * the generator.
+	 */
+	private JsonGenerator createGenerator(OutputStream out) throws IOException {
+		JsonGenerator gen = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+		gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		return gen;
 	}
 }
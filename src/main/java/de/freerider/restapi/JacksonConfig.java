@@ -0,0 +1,41 @@
+package de.freerider.restapi;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.fasterxml.jackson.databind.Module;
+
+import de.freerider.restapi.dto.CustomerDTOModule;
+
+/**
+ * Registers Jackson modules of the REST API. Module beans are picked up by the
+ * ObjectMapper bean that Spring Boot configures (used by controllers). Since
+ * SwaggerConfig enables Spring MVC explicitly (@EnableWebMvc), the MVC message
+ * converters use their own ObjectMapper, modules are also registered there.
+ */
+
+@Configuration
+public class JacksonConfig implements WebMvcConfigurer {
+
+	private final Module customerDTOModule = new CustomerDTOModule();
+
+	@Bean
+	public Module customerDTOModule() {
+		return customerDTOModule;
+	}
+
+	@Override
+	public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+		for (HttpMessageConverter<?> converter : converters) {
+			if (converter instanceof MappingJackson2HttpMessageConverter) {
+				((MappingJackson2HttpMessageConverter) converter).getObjectMapper().registerModule(customerDTOModule);
+			}
+		}
+	}
+
+}
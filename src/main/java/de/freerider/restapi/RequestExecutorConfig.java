@@ -0,0 +1,209 @@
+package de.freerider.restapi;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Selects how requests are handled. By default, requests are handled on
+ * Tomcat's fixed pool of platform threads, a request that blocks (e.g. on
+ * persistence or remote validation) occupies a pool thread and limits the
+ * number of requests in flight.
+ *
+ * In mode {@code async}, controller handlers return CompletableFuture and run
+ * on the executor of asynchronous requests, the Tomcat thread is released
+ * while the handler runs. The number of requests in flight is then limited by
+ * the size and queue of that executor rather than by Tomcat's pool, requests
+ * are rejected (503) when all threads are busy and the queue is full. Works
+ * on Java 17.
+ *
+ * In mode {@code virtual-threads}, each request is handled on a new virtual
+ * thread, blocked requests then no longer occupy pool threads. Virtual threads
+ * require a Java 21 runtime, the executor is looked up at runtime such that
+ * the application still builds for Java 17. On older runtimes the mode falls
+ * back to the thread pool with a warning.
+ *
+ * Also selects the executor of asynchronous requests (e.g. streamed
+ * StreamingResponseBody responses). Since SwaggerConfig enables Spring MVC
+ * explicitly (@EnableWebMvc), Spring Boot does not configure it, it would
+ * default to a new thread per request. Asynchronous requests run on virtual
+ * threads when requests are handled on virtual threads, otherwise on a
+ * bounded pool. The pool is only created when it is used.
+ *
+ * Configured in application.properties:
+ *
+ * <pre>
+ * {@code
+ * app.api.request-mode = pool
+ * app.api.async.pool-size = 16
+ * app.api.async.queue-capacity = 256
+ * }
+ * </pre>
+ */
+
+@Configuration
+public class RequestExecutorConfig implements WebMvcConfigurer {
+
+	private static final Logger log = LoggerFactory.getLogger(RequestExecutorConfig.class);
+
+	/**
+	 * Request handling modes, property values: pool, async, virtual-threads.
+	 */
+	public enum Mode {
+		POOL, ASYNC, VIRTUAL_THREADS
+	}
+
+	@Value("${app.api.request-mode:pool}")
+	private Mode mode;
+
+	@Value("${app.api.async.pool-size:16}")
+	private int asyncPoolSize;
+
+	@Value("${app.api.async.queue-capacity:256}")
+	private int asyncQueueCapacity;
+
+	/*
+	 * executor of virtual threads shared by Tomcat and asynchronous requests,
+	 * null if not used, guarded by this.
+	 */
+	private ExecutorService executor;
+
+	/*
+	 * executor was looked up, guarded by this.
+	 */
+	private boolean created = false;
+
+	/*
+	 * executor of asynchronous requests, null until used, guarded by this.
+	 */
+	private AsyncTaskExecutor asyncExecutor;
+
+	/*
+	 * pool of asynchronous requests, null if not used, guarded by this.
+	 */
+	private ThreadPoolTaskExecutor asyncPool;
+
+	@Bean
+	public TomcatProtocolHandlerCustomizer<ProtocolHandler> requestExecutorCustomizer() {
+		return protocolHandler -> {
+			ExecutorService e = virtualThreadExecutor();
+			if (e != null) {
+				protocolHandler.setExecutor(e);
+				log.info("requests are handled on virtual threads");
+			}
+		};
+	}
+
+	/**
+	 * Return executor that starts a new virtual thread per task, created once on
+	 * first use.
+	 *
+	 * @return executor of virtual threads, null if virtual threads are disabled
+	 *         or not supported by the runtime.
+	 */
+	public synchronized ExecutorService virtualThreadExecutor() {
+		if (mode == Mode.VIRTUAL_THREADS && !created) {
+			executor = newVirtualThreadExecutor();
+			created = true;
+		}
+		return executor;
+	}
+
+	/**
+	 * Return executor of asynchronous requests, created once on first use.
+	 *
+	 * @return executor of virtual threads when requests are handled on virtual
+	 *         threads, otherwise bounded thread pool.
+	 */
+	public synchronized AsyncTaskExecutor asyncExecutor() {
+		if (asyncExecutor == null) {
+			ExecutorService e = virtualThreadExecutor();
+			if (e != null) {
+				asyncExecutor = new ConcurrentTaskExecutor(e);
+			} else {
+				ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+				pool.setCorePoolSize(asyncPoolSize);
+				pool.setMaxPoolSize(asyncPoolSize);
+				pool.setQueueCapacity(asyncQueueCapacity);
+				pool.setThreadNamePrefix("mvc-async-");
+				pool.setWaitForTasksToCompleteOnShutdown(true);
+				pool.setAwaitTerminationSeconds(10);
+				pool.initialize();
+				asyncPool = pool;
+				asyncExecutor = pool;
+			}
+		}
+		return asyncExecutor;
+	}
+
+	/**
+	 * Return executor on which controller handlers run.
+	 *
+	 * @return executor of asynchronous requests in mode async, null if handlers
+	 *         run on the request thread.
+	 */
+	public Executor handlerExecutor() {
+		return mode == Mode.ASYNC ? asyncExecutor() : null;
+	}
+
+	@Override
+	public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+		configurer.setTaskExecutor(asyncExecutor());
+	}
+
+	/**
+	 * Shut down executors, requests in flight are given time to complete after
+	 * Tomcat has stopped accepting requests.
+	 */
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		ExecutorService e;
+		ThreadPoolTaskExecutor pool;
+		synchronized (this) {
+			e = executor;
+			pool = asyncPool;
+		}
+		if (e != null) {
+			e.shutdown();
+			e.awaitTermination(10, TimeUnit.SECONDS);
+		}
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	/*
+	 * private methods
+	 */
+
+	/**
+	 * Create executor that starts a new virtual thread per task, null if the
+	 * runtime does not support virtual threads.
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			log.warn("virtual threads not supported by Java {}, requests are handled on the thread pool",
+					System.getProperty("java.version"));
+			return null;
+		}
+	}
+
+}
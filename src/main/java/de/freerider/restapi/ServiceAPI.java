@@ -1,6 +1,7 @@
 package de.freerider.restapi;
 
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -35,6 +36,17 @@ public interface ServiceAPI {
 	@RequestMapping(method = RequestMethod.GET, value = "/people/pretty", produces = { "application/json" })
 	ResponseEntity<String> getPeoplePretty();
 
+	/**
+	 * GET /server/metrics
+	 * 
+	 * Return JSON Object with metrics of the server, e.g. hits and misses of the
+	 * projection cache and the response cache of the /customers endpoint.
+	 * 
+	 * @return JSON Object with metrics
+	 */
+	@RequestMapping(method = RequestMethod.GET, value = "/server/metrics", produces = { "application/json" })
+	ResponseEntity<Map<String, ?>> getMetrics();
+
 	/**
 	 * GET /server/stop
 	 * 
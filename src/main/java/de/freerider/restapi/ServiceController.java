@@ -3,10 +3,14 @@ package de.freerider.restapi;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ConfigurableApplicationContext;
@@ -21,12 +25,23 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 
+import de.freerider.restapi.dto.ProjectionCache;
+import de.freerider.restapi.dto.ResponseCache;
+
 @RestController
 class ServiceController implements ServiceAPI {
+
+	private static final Logger log = LoggerFactory.getLogger(ServiceController.class);
 	//
 	@Autowired
 	private ApplicationContext context;
 	//
+	@Autowired
+	private ProjectionCache projections;
+	//
+	@Autowired
+	private ResponseCache responseCache;
+	//
 	private final ObjectMapper objectMapper;
 	//
 	private final HttpServletRequest request;
@@ -53,7 +68,7 @@ class ServiceController implements ServiceAPI {
 	public ResponseEntity<List<?>> getPeople() {
 		//
 		ResponseEntity<List<?>> re = null;
-		System.err.println(request.getMethod() + " " + request.getRequestURI());
+		log.info("method={} uri={}", request.getMethod(), request.getRequestURI());
 		try {
 			ArrayNode arrayNode = peopleAsJSON();
 			ObjectReader reader = objectMapper.readerFor(new TypeReference<List<ObjectNode>>() {
@@ -79,7 +94,7 @@ class ServiceController implements ServiceAPI {
 	public ResponseEntity<String> getPeoplePretty() {
 		//
 		ResponseEntity<String> re = null;
-		System.err.println(request.getMethod() + " " + request.getRequestURI());
+		log.info("method={} uri={}", request.getMethod(), request.getRequestURI());
 		try {
 			ArrayNode arrayNode = peopleAsJSON();
 			String pretty = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(arrayNode);
@@ -92,6 +107,31 @@ class ServiceController implements ServiceAPI {
 		return re;
 	}
 
+	/**
+	 * GET /server/metrics
+	 * 
+	 * Return JSON Object with metrics of the server: hits, misses and size of
+	 * the projection cache and the response cache.
+	 * 
+	 * @return JSON Object with metrics
+	 */
+	@Override
+	public ResponseEntity<Map<String, ?>> getMetrics() {
+		log.info("method={} uri={}", request.getMethod(), request.getRequestURI());
+		Map<String, Object> cache = new LinkedHashMap<String, Object>();
+		cache.put("hits", projections.hits());
+		cache.put("misses", projections.misses());
+		cache.put("size", projections.size());
+		Map<String, Object> responses = new LinkedHashMap<String, Object>();
+		responses.put("hits", responseCache.hits());
+		responses.put("misses", responseCache.misses());
+		responses.put("size", responseCache.size());
+		Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+		metrics.put("projection-cache", cache);
+		metrics.put("response-cache", responses);
+		return new ResponseEntity<Map<String, ?>>(metrics, HttpStatus.OK);
+	}
+
 	/**
 	 * GET /server/stop
 	 * 
@@ -103,12 +143,13 @@ class ServiceController implements ServiceAPI {
 	public ResponseEntity<Void> stop() {
 		//
 		try {
-			System.err.print(request.getRequestURI() + " " + request.getMethod() + "\nshutting down server...");
+			log.info("method={} uri={}", request.getMethod(), request.getRequestURI());
+			log.info("shutting down server...");
 			//
 			ApplicationContext context = this.context;
 			((ConfigurableApplicationContext) context).close();
 			//
-			System.err.println("  done.");
+			log.info("shutting down server done.");
 			//
 			return new ResponseEntity<Void>(HttpStatus.OK);
 
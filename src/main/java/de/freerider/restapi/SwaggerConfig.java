@@ -1,5 +1,7 @@
 package de.freerider.restapi;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -63,6 +65,7 @@ public class SwaggerConfig {
 						.build()
 //			.directModelSubstitute( LocalDate.class, java.sql.Date.class )
 //			.directModelSubstitute( LocalDateTime.class, java.util.Date.class )
+						.genericModelSubstitutes(CompletableFuture.class) // document responses of futures
 						.apiInfo(apiInfo());
 	}
 
@@ -1,13 +1,18 @@
 package de.freerider.restapi.dto;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Optional;
 import java.util.concurrent.ThreadLocalRandom;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import de.freerider.datamodel.Customer;
+import de.freerider.repository.IdAllocator;
 
 /**
  * Class for Data-Transfer Objects (DTO) for REST-endpoint: /customers through
@@ -30,47 +35,65 @@ import de.freerider.datamodel.Customer;
 
 public class CustomerDTO {
 
+	private static final Logger log = LoggerFactory.getLogger(CustomerDTO.class);
+
+	/*
+	 * format of time-sent in log messages, thread-safe.
+	 */
+	private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd, HH:mm:ss.SSS")
+			.withZone(ZoneId.systemDefault());
+
+	/*
+	 * generator of unique number for each generated DTO, safe for concurrent
+	 * requests.
+	 */
+	private static final SerialNumberGenerator serialno = new SerialNumberGenerator();
+
 	/*
-	 * internal counter to create unique number for each generated DTO.
+	 * JsonProperty fields are package-private, they are written and read by the
+	 * serializer and deserializer of CustomerDTOModule.
 	 */
-	private static long serialno = 0;
 
 	/**
 	 * JsonProperty, serial number incremented for each DTO.
 	 */
 	@JsonProperty("serialnumber")
-	private long serial;
+	long serial;
 
 	/**
 	 * JsonProperty, unique identifier to track DTO.
 	 */
 	@JsonProperty("uuid")
-	private long uuid;
+	long uuid;
 
 	/**
-	 * JsonProperty, timestamp when DTO was sent, requires custom setter to create
-	 * Date object from long value.
+	 * JsonProperty, timestamp (milliseconds) when DTO was sent.
 	 */
 	@JsonProperty("time-sent")
-	private Date timeSent;
+	long timeSent;
 
 	/**
 	 * JsonProperty, id externalized as String (not long that is internally used).
 	 */
 	@JsonProperty("customer-id")
-	private String id;
+	String id;
 
 	/**
 	 * JsonProperty, full name as externalized by getName() method.
 	 */
 	@JsonProperty("customer-name")
-	private String name;
+	String name;
 
 	/**
 	 * JsonProperty, contacts[] flattened to ';'-separated String.
 	 */
 	@JsonProperty("customer-contacts")
-	private String contacts;
+	String contacts;
+
+	/*
+	 * rules violated by the last call of create(), not serialized.
+	 */
+	private int rejects = CustomerValidator.VALID;
 
 	/**
 	 * Public constructor to create DTO from internal object.
@@ -79,14 +102,22 @@ public class CustomerDTO {
 	 */
 
 	public CustomerDTO(Customer copy) {
-		this.id = Long.toString(copy.getId());
-		this.name = copy.getName();
-		StringBuffer sb = new StringBuffer();
-		copy.getContacts().forEach(contact -> sb.append(sb.length() == 0 ? "" : "; ").append(contact));
-		this.contacts = sb.toString();
-		this.serial = serialno++;
-		this.uuid = ThreadLocalRandom.current().nextInt(10000000, 100000000);
-		this.timeSent = new Date();
+		this(CustomerProjection.of(copy));
+	}
+
+	/**
+	 * Public constructor to create DTO from projection of internal object, e.g.
+	 * from ProjectionCache.
+	 * 
+	 * @param projection projection of internal object for which DTO is created.
+	 */
+	public CustomerDTO(CustomerProjection projection) {
+		this.id = projection.getId();
+		this.name = projection.getName();
+		this.contacts = projection.getContacts();
+		this.serial = nextSerial();
+		this.uuid = nextUuid();
+		this.timeSent = System.currentTimeMillis();
 	}
 
 	/**
@@ -103,7 +134,19 @@ public class CustomerDTO {
 	 */
 	public Optional<Customer> create() {
 		// return create_();
-		return createValidated();
+		return createValidated(null);
+	}
+
+	/**
+	 * Public factory method to create internal object from this DTO. A new id is
+	 * allocated when the DTO has no id (null or empty), the allocated id is also
+	 * set in the DTO.
+	 * 
+	 * @param ids allocator used for DTO without id.
+	 * @return Optional with created internal object (or empty).
+	 */
+	public Optional<Customer> create(IdAllocator ids) {
+		return createValidated(ids);
 	}
 
 	@Deprecated
@@ -132,151 +175,149 @@ public class CustomerDTO {
 	/**
 	 * Private method to create Customer Object from DTO (including validity check)
 	 * 
+	 * All rules of CustomerValidator are evaluated in one pass, the id is parsed
+	 * once. Violated rules are kept as bit mask, see {@link #rejects()}.
+	 * 
 	 * @author t-onia
 	 */
-	private Optional<Customer> createValidated() {
-		Customer customer = null;
-		// check validity of attributes before creating Customer
-		if (validateRule_A() && validateRule_B() && validateRule_C() && validateRule_D() && validateRule_E()) {
-			try {
-				//
-				long idL = Long.parseLong(this.id);
-				customer = new Customer().setId(idL).setName(this.name);
-				for (String contact : contacts.toString().split(";")) {
-					String contactr = contact.trim();
-					if (contactr.length() > 0) {
-						customer.addContact(contactr);
-					}
-				}
-				return Optional.ofNullable(customer);
-			} catch (Exception e) {
-				customer = null; // delete customer if there is a problem while facturing
+	private Optional<Customer> createValidated(IdAllocator ids) {
+		boolean assignId = ids != null && (this.id == null || this.id.trim().isEmpty());
+		long idL = assignId ? 0 : CustomerValidator.parseId(this.id);
+		this.rejects = CustomerValidator.validate(idL, serial, uuid, timeSent, name, contacts);
+		if (rejects != CustomerValidator.VALID) {
+			if (log.isDebugEnabled()) {
+				log.debug("JSON object rejected, customer-id: \"{}\", {}", this.id, CustomerValidator.describe(rejects));
 			}
+			return Optional.empty();
 		}
-		return Optional.ofNullable(customer);
+		if (assignId) {
+			idL = ids.allocate();
+			this.id = Long.toString(idL);
+		}
+		Customer customer = new Customer().setId(idL).setName(this.name);
+		for (String contact : contacts.split(";")) {
+			String contactr = contact.trim();
+			if (contactr.length() > 0) {
+				customer.addContact(contactr);
+			}
+		}
+		return Optional.of(customer);
+	}
+
+	/**
+	 * Return rules violated by the last call of create(), used for reporting.
+	 * 
+	 * @return bit mask of CustomerValidator.Rule codes, CustomerValidator.VALID if
+	 *         DTO was accepted or not yet validated.
+	 */
+	public int rejects() {
+		return this.rejects;
 	}
 
 	/**
-	 * Validity rules check
+	 * Validity rules check, single rules of CustomerValidator.
 	 */
 	public boolean validateRule_A() {
-		boolean valid = false;
-		if (this.id != null) {
-			try {
-				long idL = Long.parseLong(this.id);
-				if (idL >= 0) {
-					valid = true;
-				} else {
-					System.err.println(
-							"Error: invalid JSON object rejected, reason validateRule_A: invalid id: value out of range: 0 <= "
-									+ this.id + " <= 9223372036854775807");
-				}
-			} catch (Exception e) {
-				System.err.println("Error: invalid JSON object rejected, reason validateRule_A: invalid id: \""
-						+ this.id + "\" NumberFormatException converting to long.");
-			}
-		} else {
-			System.err.println(
-					"Error: invalid JSON object rejected, reason validateRule_A: invalid id: null or empty, string: "
-							+ this.id);
-		}
-		return valid;
+		return valid(CustomerValidator.checkId(CustomerValidator.parseId(this.id)), this.id);
 	}
 
 	public boolean validateRule_B() {
-		boolean valid = false;
-		Long l = this.serial;
-		if (l >= 0 || l == null) {
-			valid = true;
-		} else {
-			System.err.println("Error: invalid JSON object rejected, reason validateRule_B: value out of range: 0 <= "
-					+ this.serial + " <= 9223372036854775807");
-		}
-		return valid;
+		return valid(this.serial >= 0 ? CustomerValidator.VALID : CustomerValidator.Rule.B_SERIAL.bit(), this.serial);
 	}
 
 	public boolean validateRule_C() {
-		boolean valid = false;
-		Long l = this.uuid;
-		if (l >= 0 || l == null) {
-			valid = true;
-		} else {
-			System.err.println("Error: invalid JSON object rejected, reason validateRule_C: value out of range: 0 <= "
-					+ this.uuid + " <= 9223372036854775807");
-		}
-		return valid;
+		return valid(this.uuid >= 0 ? CustomerValidator.VALID : CustomerValidator.Rule.C_UUID.bit(), this.uuid);
 	}
 
 	public boolean validateRule_D() {
-		boolean valid = false;
-		long date = getTimestamp();
-		long min = 1609459200000L; // 01.01.2021
-		long max = new Date().getTime(); // no future dates
-		if (date >= min && date <= max) {
-			valid = true;
-		} else {
-			System.err.println(
-					"Error: invalid JSON object rejected, reason validateRule_D: value out of range: 1609459200000 <= "
-							+ date + " <= " + max);
-		}
-		return valid;
+		return valid(CustomerValidator.checkTimeSent(this.timeSent), this.timeSent);
 	}
 
 	public boolean validateRule_E() {
-		boolean valid = false;
-		if (this.name != null && !this.name.isEmpty()) {
-			valid = true;
-		} else {
-			System.err.println("Error: invalid JSON object rejected, reason validateRule_E: string: \"" + this.name
-					+ "\" (null or empty)");
+		return valid(CustomerValidator.checkName(this.name), this.name);
+	}
+
+	/*
+	 * log violated rule, the message is only formatted for invalid values.
+	 */
+	private static boolean valid(int rejected, Object value) {
+		if (rejected != CustomerValidator.VALID) {
+			log.warn("invalid JSON object rejected, value: \"{}\", {}", value, CustomerValidator.describe(rejected));
+			return false;
 		}
-		return valid;
+		return true;
 	}
 
 	/**
-	 * Custom setter to create Date object from long value.
-	 * 
-	 * @param timestamp found in JSON as long value.
+	 * Timestamp getter.
 	 * 
+	 * @return timestamp (milliseconds) when DTO was sent.
 	 */
 	@JsonProperty("time-sent")
 	public long getTimestamp() {
-		return this.timeSent.getTime();
+		return this.timeSent;
 	}
 
 	/**
-	 * Custom setter to create Date object from long value.
+	 * Timestamp setter.
 	 * 
 	 * @param timestamp found in JSON as long value.
 	 * 
 	 */
 	@JsonProperty("time-sent")
 	public void setTimestamp(long timestamp) {
-		this.timeSent = new Date(timestamp);
+		this.timeSent = timestamp;
+	}
+
+	/**
+	 * Return next serial number, also used for DTO rendered from cached JSON.
+	 * 
+	 * @return serial number unique across threads.
+	 */
+	static long nextSerial() {
+		return serialno.next();
+	}
+
+	/**
+	 * Return new random uuid, also used for DTO rendered from cached JSON.
+	 * 
+	 * @return uuid.
+	 */
+	static long nextUuid() {
+		return ThreadLocalRandom.current().nextInt(10000000, 100000000);
+	}
+
+	/**
+	 * Return id as found in JSON data, used for reporting.
+	 * 
+	 * @return id as String, may be null.
+	 */
+	String rawId() {
+		return this.id;
 	}
 
 	/*
-	 * Convenience methods.
+	 * Convenience methods, log at debug level, nothing is formatted when debug
+	 * logging is disabled.
 	 */
 
 	public void print() {
-		String timeStamp = new SimpleDateFormat("yyyy/MM/dd, HH:mm:ss.SSS").format(timeSent);
-		System.out.println("Customer-DTO: " + "serialnumber: " + serial + ", " + "uuid: " + uuid + ", "
-				+ "customer-id: \"" + id + "\", " + "customer-name: \"" + name + "\", " + "customer-contacts: \""
-				+ contacts + "\", " + "time-sent: \"" + timeStamp + "\"");
+		if (log.isDebugEnabled()) {
+			log.debug(
+					"Customer-DTO: serialnumber: {}, uuid: {}, customer-id: \"{}\", customer-name: \"{}\", customer-contacts: \"{}\", time-sent: \"{}\"",
+					serial, uuid, id, name, contacts, TIME_FORMAT.format(Instant.ofEpochMilli(timeSent)));
+		}
 	}
 
 	public static void print(Optional<Customer> opt) {
-		if (opt.isPresent()) {
-			Customer customer = opt.get();
-			StringBuffer sb = new StringBuffer();
-			customer.getContacts().forEach(contact -> sb.append(", contact: \"").append(contact).append("\""));
-			//
-			System.out.println("Customer-OBJ: " + "id: \"" + customer.getId() + "\", " + "lastName: \""
-					+ customer.getLastName() + "\", " + "firstName: \"" + customer.getFirstName() + "\", "
-					+ "contactsCount: " + customer.contactsCount() + sb.toString());
-		} else {
-			System.out.println("Customer-OBJ: empty.");
+		if (log.isDebugEnabled()) {
+			if (opt.isPresent()) {
+				Customer customer = opt.get();
+				log.debug("Customer-OBJ: id: \"{}\", lastName: \"{}\", firstName: \"{}\", contacts: {}", customer.getId(),
+						customer.getLastName(), customer.getFirstName(), customer.getContacts());
+			} else {
+				log.debug("Customer-OBJ: empty.");
+			}
 		}
 	}
 
@@ -0,0 +1,139 @@
+package de.freerider.restapi.dto;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Jackson module with hand-written serializer and deserializer for
+ * CustomerDTO. DTO fields are written directly to the JsonGenerator with
+ * pre-encoded field names and read directly from the JsonParser, bypassing
+ * reflective bean introspection and property access.
+ *
+ * JSON produced and accepted is the same as with the default mapping of the
+ * {@code @JsonProperty} annotations of CustomerDTO: unknown fields are handled
+ * as configured for the ObjectMapper, numbers and strings are coerced like by
+ * the default mapping.
+ */
+
+public class CustomerDTOModule extends SimpleModule {
+
+	private static final long serialVersionUID = 1L;
+
+	/*
+	 * pre-encoded JSON field names.
+	 */
+	private static final SerializedString SERIAL = new SerializedString("serialnumber");
+
+	private static final SerializedString UUID = new SerializedString("uuid");
+
+	private static final SerializedString TIME_SENT = new SerializedString("time-sent");
+
+	private static final SerializedString ID = new SerializedString("customer-id");
+
+	private static final SerializedString NAME = new SerializedString("customer-name");
+
+	private static final SerializedString CONTACTS = new SerializedString("customer-contacts");
+
+	/**
+	 * Public constructor.
+	 */
+	public CustomerDTOModule() {
+		super("CustomerDTOModule");
+		addSerializer(CustomerDTO.class, new Serializer());
+		addDeserializer(CustomerDTO.class, new Deserializer());
+	}
+
+	/**
+	 * Serializer that writes CustomerDTO as JSON object.
+	 */
+	static final class Serializer extends StdSerializer<CustomerDTO> {
+
+		private static final long serialVersionUID = 1L;
+
+		Serializer() {
+			super(CustomerDTO.class);
+		}
+
+		@Override
+		public void serialize(CustomerDTO dto, JsonGenerator gen, SerializerProvider provider) throws IOException {
+			gen.writeStartObject(dto);
+			gen.writeFieldName(SERIAL);
+			gen.writeNumber(dto.serial);
+			gen.writeFieldName(UUID);
+			gen.writeNumber(dto.uuid);
+			gen.writeFieldName(TIME_SENT);
+			gen.writeNumber(dto.timeSent);
+			gen.writeFieldName(ID);
+			gen.writeString(dto.id);
+			gen.writeFieldName(NAME);
+			gen.writeString(dto.name);
+			gen.writeFieldName(CONTACTS);
+			gen.writeString(dto.contacts);
+			gen.writeEndObject();
+		}
+	}
+
+	/**
+	 * Deserializer that reads CustomerDTO from JSON object.
+	 */
+	static final class Deserializer extends StdDeserializer<CustomerDTO> {
+
+		private static final long serialVersionUID = 1L;
+
+		Deserializer() {
+			super(CustomerDTO.class);
+		}
+
+		@Override
+		public CustomerDTO deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+			JsonToken t = p.currentToken();
+			if (t == JsonToken.START_OBJECT) {
+				t = p.nextToken();
+			} else if (t != JsonToken.FIELD_NAME && t != JsonToken.END_OBJECT) {
+				return (CustomerDTO) ctxt.handleUnexpectedToken(CustomerDTO.class, p);
+			}
+			CustomerDTO dto = new CustomerDTO();
+			for (; t == JsonToken.FIELD_NAME; t = p.nextToken()) {
+				String field = p.currentName();
+				p.nextToken();
+				switch (field) {
+				case "serialnumber":
+					dto.serial = _parseLongPrimitive(p, ctxt);
+					break;
+				case "uuid":
+					dto.uuid = _parseLongPrimitive(p, ctxt);
+					break;
+				case "time-sent":
+					dto.timeSent = _parseLongPrimitive(p, ctxt);
+					break;
+				case "customer-id":
+					dto.id = parseString(p, ctxt);
+					break;
+				case "customer-name":
+					dto.name = parseString(p, ctxt);
+					break;
+				case "customer-contacts":
+					dto.contacts = parseString(p, ctxt);
+					break;
+				default: // skipped or rejected as configured by FAIL_ON_UNKNOWN_PROPERTIES
+					ctxt.handleUnknownProperty(p, this, dto, field);
+				}
+			}
+			return dto;
+		}
+
+		private String parseString(JsonParser p, DeserializationContext ctxt) throws IOException {
+			return p.currentToken() == JsonToken.VALUE_NULL ? null : _parseString(p, ctxt);
+		}
+	}
+
+}
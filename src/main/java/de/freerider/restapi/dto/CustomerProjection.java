@@ -0,0 +1,82 @@
+package de.freerider.restapi.dto;
+
+import de.freerider.datamodel.Customer;
+
+/**
+ * Immutable projection of a Customer object to the attributes externalized by
+ * CustomerDTO: id, name and contacts joined to a ';'-separated String. The
+ * projection records the version of the customer it was created from.
+ */
+
+public final class CustomerProjection {
+
+	private final Customer source;
+
+	private final long version;
+
+	private final String id;
+
+	private final String name;
+
+	private final String contacts;
+
+	/**
+	 * Create projection of customer.
+	 *
+	 * @param c customer projected.
+	 * @return projection of the current state of customer.
+	 */
+	public static CustomerProjection of(Customer c) {
+		long version = c.getVersion(); // read before attributes, later changes make projection outdated
+		StringBuilder sb = new StringBuilder();
+		c.getContacts().forEach(contact -> sb.append(sb.length() == 0 ? "" : "; ").append(contact));
+		return new CustomerProjection(c, version, Long.toString(c.getId()), c.getName(), sb.toString());
+	}
+
+	private CustomerProjection(Customer source, long version, String id, String name, String contacts) {
+		this.source = source;
+		this.version = version;
+		this.id = id;
+		this.name = name;
+		this.contacts = contacts;
+	}
+
+	/**
+	 * Test whether projection reflects the current state of customer.
+	 *
+	 * @param c customer to test.
+	 * @return true if projection was created from customer and customer has not
+	 *         changed since.
+	 */
+	public boolean isCurrent(Customer c) {
+		return source == c && version == c.getVersion();
+	}
+
+	/**
+	 * Id getter.
+	 *
+	 * @return id as String.
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * Name getter.
+	 *
+	 * @return name as returned by Customer.getName().
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Contacts getter.
+	 *
+	 * @return contacts joined to a ';'-separated String.
+	 */
+	public String getContacts() {
+		return contacts;
+	}
+
+}
@@ -0,0 +1,182 @@
+package de.freerider.restapi.dto;
+
+/**
+ * Validation rules for customer data received by the REST controllers. All
+ * rules are evaluated in one pass over fields that are parsed once, violated
+ * rules are returned as bit mask of {@link Rule} codes. No messages are
+ * formatted during validation, {@link #describe(int)} renders codes for
+ * reporting.
+ *
+ * Rules:
+ *
+ * <pre>
+ * {@code
+ * A  id:         id is a number in range 0 <= id <= Long.MAX_VALUE
+ * B  serial:     serialnumber >= 0
+ * C  uuid:       uuid >= 0
+ * D  time-sent:  01.01.2021 (1609459200000) <= time-sent <= now (no future dates)
+ * E  name:       name is not null or empty
+ * F  contacts:   contacts are not null
+ * }
+ * </pre>
+ */
+
+public final class CustomerValidator {
+
+	/**
+	 * Validation rules with bit codes.
+	 */
+	public enum Rule {
+		A_ID("customer-id"), B_SERIAL("serialnumber"), C_UUID("uuid"), D_TIME_SENT("time-sent"), E_NAME("customer-name"),
+		F_CONTACTS("customer-contacts");
+
+		private final String field;
+
+		Rule(String field) {
+			this.field = field;
+		}
+
+		/**
+		 * Return bit code of rule.
+		 *
+		 * @return bit code of rule.
+		 */
+		public int bit() {
+			return 1 << ordinal();
+		}
+
+		/**
+		 * Return name of the JSON field checked by the rule.
+		 *
+		 * @return field name.
+		 */
+		public String field() {
+			return field;
+		}
+	}
+
+	/**
+	 * Bit mask of no violated rule.
+	 */
+	public static final int VALID = 0;
+
+	/*
+	 * earliest valid time-sent: 01.01.2021
+	 */
+	private static final long MIN_TIME_SENT = 1609459200000L;
+
+	private static final Rule[] RULES = Rule.values();
+
+	private CustomerValidator() {
+	}
+
+	/**
+	 * Evaluate all rules.
+	 *
+	 * @param id       parsed id, see {@link #parseId(String)}, {@code < 0} if
+	 *                 invalid.
+	 * @param serial   serial number.
+	 * @param uuid     uuid.
+	 * @param timeSent timestamp (milliseconds) when data was sent.
+	 * @param name     name.
+	 * @param contacts contacts.
+	 * @return bit mask of violated rules, {@link #VALID} if all rules hold.
+	 */
+	public static int validate(long id, long serial, long uuid, long timeSent, String name, String contacts) {
+		int rejects = checkId(id);
+		rejects |= serial >= 0 ? 0 : Rule.B_SERIAL.bit();
+		rejects |= uuid >= 0 ? 0 : Rule.C_UUID.bit();
+		rejects |= checkTimeSent(timeSent);
+		rejects |= checkName(name);
+		rejects |= contacts != null ? 0 : Rule.F_CONTACTS.bit();
+		return rejects;
+	}
+
+	/**
+	 * Evaluate rule A.
+	 *
+	 * @param id parsed id.
+	 * @return bit of rule A if violated, {@link #VALID} otherwise.
+	 */
+	public static int checkId(long id) {
+		return id >= 0 ? VALID : Rule.A_ID.bit();
+	}
+
+	/**
+	 * Evaluate rule D.
+	 *
+	 * @param timeSent timestamp (milliseconds) when data was sent.
+	 * @return bit of rule D if violated, {@link #VALID} otherwise.
+	 */
+	public static int checkTimeSent(long timeSent) {
+		return timeSent >= MIN_TIME_SENT && timeSent <= System.currentTimeMillis() ? VALID : Rule.D_TIME_SENT.bit();
+	}
+
+	/**
+	 * Evaluate rule E.
+	 *
+	 * @param name name.
+	 * @return bit of rule E if violated, {@link #VALID} otherwise.
+	 */
+	public static int checkName(String name) {
+		return name != null && !name.isEmpty() ? VALID : Rule.E_NAME.bit();
+	}
+
+	/**
+	 * Parse id without throwing exceptions, accepts the same numbers as
+	 * {@link Long#parseLong(String)}.
+	 *
+	 * @param id id as String.
+	 * @return parsed id, -1 if id is null, not a number, negative or out of
+	 *         range.
+	 */
+	public static long parseId(String id) {
+		if (id == null || id.isEmpty()) {
+			return -1;
+		}
+		int i = id.charAt(0) == '+' ? 1 : 0;
+		if (i == id.length()) {
+			return -1;
+		}
+		long n = 0;
+		for (; i < id.length(); i++) {
+			int d = Character.digit(id.charAt(i), 10);
+			if (d < 0 || n > (Long.MAX_VALUE - d) / 10) {
+				return -1;
+			}
+			n = n * 10 + d;
+		}
+		return n;
+	}
+
+	/**
+	 * Test whether rule is violated in bit mask.
+	 *
+	 * @param rejects bit mask of violated rules.
+	 * @param rule    rule to test.
+	 * @return true if rule is violated.
+	 */
+	public static boolean isViolated(int rejects, Rule rule) {
+		return (rejects & rule.bit()) != 0;
+	}
+
+	/**
+	 * Describe violated rules for reporting, e.g. {@code "invalid: customer-id, customer-name"}.
+	 *
+	 * @param rejects bit mask of violated rules.
+	 * @return description of violated rules.
+	 */
+	public static String describe(int rejects) {
+		if (rejects == VALID) {
+			return "valid";
+		}
+		StringBuilder sb = new StringBuilder("invalid: ");
+		for (Rule rule : RULES) {
+			if (isViolated(rejects, rule)) {
+				sb.append(sb.length() > 9 ? ", " : "").append(rule.field());
+			}
+		}
+		return sb.toString();
+	}
+
+}
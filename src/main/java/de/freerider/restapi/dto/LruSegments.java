@@ -0,0 +1,87 @@
+package de.freerider.restapi.dto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded map of values by customer id used by caches. The map is split into
+ * segments with least-recently-used eviction each, each segment is guarded by
+ * its own lock such that lookups of different ids rarely contend.
+ *
+ * @param <V> type of cached values.
+ */
+
+final class LruSegments<V> {
+
+	/*
+	 * number of segments, must be a power of 2.
+	 */
+	static final int SEGMENTS = 16;
+
+	private final Map<Long, V>[] segments;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxEntries maximum number of entries, {@code >= SEGMENTS}.
+	 */
+	@SuppressWarnings("unchecked")
+	LruSegments(int maxEntries) {
+		if (maxEntries < SEGMENTS) {
+			throw new IllegalArgumentException("Maximum number of entries must be >= " + SEGMENTS + ".");
+		}
+		this.segments = (Map<Long, V>[]) new Map<?, ?>[SEGMENTS];
+		int capacity = maxEntries / SEGMENTS;
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new LinkedHashMap<Long, V>(capacity * 4 / 3 + 1, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Long, V> eldest) {
+					return size() > capacity;
+				}
+			};
+		}
+	}
+
+	V get(long id) {
+		Map<Long, V> segment = segment(id);
+		synchronized (segment) {
+			return segment.get(id);
+		}
+	}
+
+	void put(long id, V value) {
+		Map<Long, V> segment = segment(id);
+		synchronized (segment) {
+			segment.put(id, value);
+		}
+	}
+
+	void remove(long id) {
+		Map<Long, V> segment = segment(id);
+		synchronized (segment) {
+			segment.remove(id);
+		}
+	}
+
+	int size() {
+		int size = 0;
+		for (Map<Long, V> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/*
+	 * private methods
+	 */
+
+	private Map<Long, V> segment(long id) {
+		long h = id ^ (id >>> 32);
+		return segments[(int) (h ^ (h >>> 16)) & (SEGMENTS - 1)];
+	}
+
+}
@@ -0,0 +1,118 @@
+package de.freerider.restapi.dto;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import de.freerider.datamodel.Customer;
+
+/**
+ * Bounded cache of CustomerProjection objects by customer id, such that
+ * repeated requests for unchanged customers do no per-customer String
+ * building. Cached projections are validated against the version of the
+ * customer on every lookup, a changed or replaced customer is projected again.
+ * Projections of deleted customers are removed with {@link #evict(long)}.
+ *
+ * The cache is split into segments with least-recently-used eviction each,
+ * the maximum number of entries is configured in application.properties:
+ *
+ * <pre>
+ * {@code
+ * app.api.projection-cache.max-entries = 10000
+ * }
+ * </pre>
+ */
+
+@Component
+public class ProjectionCache {
+
+	private final LruSegments<CustomerProjection> cache;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Public constructor.
+	 *
+	 * @param maxEntries maximum number of cached projections.
+	 */
+	public ProjectionCache(@Value("${app.api.projection-cache.max-entries:10000}") int maxEntries) {
+		this.cache = new LruSegments<CustomerProjection>(maxEntries);
+	}
+
+	/**
+	 * Return projection of the current state of customer, from the cache if
+	 * present and current.
+	 *
+	 * @param c customer projected.
+	 * @return projection of customer.
+	 */
+	public CustomerProjection get(Customer c) {
+		CustomerProjection p = cache.get(c.getId());
+		if (p != null && p.isCurrent(c)) {
+			hits.increment();
+			return p;
+		}
+		misses.increment();
+		p = CustomerProjection.of(c);
+		cache.put(c.getId(), p);
+		return p;
+	}
+
+	/**
+	 * Return projection of the current state of customer, from the cache if
+	 * present and current. New projections are not cached, used for exports of
+	 * all customers that would otherwise evict all other entries.
+	 *
+	 * @param c customer projected.
+	 * @return projection of customer.
+	 */
+	public CustomerProjection project(Customer c) {
+		CustomerProjection p = cache.get(c.getId());
+		if (p != null && p.isCurrent(c)) {
+			hits.increment();
+			return p;
+		}
+		misses.increment();
+		return CustomerProjection.of(c);
+	}
+
+	/**
+	 * Remove projection of customer with id, e.g. after the customer was deleted.
+	 *
+	 * @param id id of customer.
+	 */
+	public void evict(long id) {
+		cache.remove(id);
+	}
+
+	/**
+	 * Return number of lookups answered from the cache.
+	 *
+	 * @return number of cache hits.
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Return number of lookups that created a new projection.
+	 *
+	 * @return number of cache misses.
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Return number of cached projections.
+	 *
+	 * @return number of cached projections.
+	 */
+	public int size() {
+		return cache.size();
+	}
+
+}
@@ -0,0 +1,50 @@
+package de.freerider.restapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Data-Transfer Object (DTO) reporting a rejected record of a streamed
+ * request, renders JSON like: {@code
+ * {
+ *   "index": 4,
+ *   "customer-id": "1AA",
+ *   "reason": "invalid: customer-id, customer-name" } }
+ *
+ * Index is the position of the rejected record in the request (starting at 0),
+ * reason names the fields of violated CustomerValidator rules.
+ */
+
+public class RejectDTO {
+
+	/**
+	 * JsonProperty, position of record in the request.
+	 */
+	@JsonProperty("index")
+	private final long index;
+
+	/**
+	 * JsonProperty, customer id of record as found in the request (may be null).
+	 */
+	@JsonProperty("customer-id")
+	private final String id;
+
+	/**
+	 * JsonProperty, reason for rejection.
+	 */
+	@JsonProperty("reason")
+	private final String reason;
+
+	/**
+	 * Public constructor.
+	 *
+	 * @param index  position of record in the request.
+	 * @param dto    rejected record, may be null if record could not be read.
+	 * @param reason reason for rejection.
+	 */
+	public RejectDTO(long index, CustomerDTO dto, String reason) {
+		this.index = index;
+		this.id = dto != null ? dto.rawId() : null;
+		this.reason = reason;
+	}
+
+}
@@ -0,0 +1,231 @@
+package de.freerider.restapi.dto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.freerider.datamodel.Customer;
+
+/**
+ * Bounded cache of pre-serialized JSON of CustomerDTO by customer id, used to
+ * answer single-customer GET requests without serialization.
+ *
+ * The cache holds the UTF-8 encoded customer part of the JSON object, the
+ * per-response attributes {@code serialnumber}, {@code uuid} and
+ * {@code time-sent} are rendered when the entry is written, such that the
+ * output is the same as for serialized CustomerDTO. The ETag of an entry is
+ * derived from the cached bytes and does not change while the customer is
+ * unchanged.
+ *
+ * Entries are validated against the version of the customer on every lookup
+ * and are invalidated explicitly when customers are updated or deleted. The
+ * cache is split into segments with least-recently-used eviction each, the
+ * maximum number of entries is configured in application.properties:
+ *
+ * <pre>
+ * {@code
+ * app.api.response-cache.max-entries = 10000
+ * }
+ * </pre>
+ */
+
+@Component
+public class ResponseCache {
+
+	private static final byte[] SERIAL = "{\"serialnumber\":".getBytes(StandardCharsets.UTF_8);
+
+	private static final byte[] UUID = ",\"uuid\":".getBytes(StandardCharsets.UTF_8);
+
+	private static final byte[] TIME_SENT = ",\"time-sent\":".getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * Cached JSON of one customer.
+	 */
+	public static final class Entry {
+
+		private final Customer source;
+
+		private final long version;
+
+		/*
+		 * JSON object with customer attributes without opening brace: {@code
+		 * "customer-id":..,"customer-name":..,"customer-contacts":..}}
+		 */
+		private final byte[] body;
+
+		private final String etag;
+
+		private Entry(Customer source, long version, byte[] body) {
+			this.source = source;
+			this.version = version;
+			this.body = body;
+			this.etag = etag(body);
+		}
+
+		/**
+		 * ETag getter.
+		 *
+		 * @return strong entity tag (quoted) of the customer's JSON.
+		 */
+		public String getETag() {
+			return etag;
+		}
+
+		private boolean isCurrent(Customer c) {
+			return source == c && version == c.getVersion();
+		}
+	}
+
+	private final JsonFactory jsonFactory;
+
+	private final LruSegments<Entry> entries;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Public constructor.
+	 *
+	 * @param objectMapper provides JsonFactory used to encode JSON.
+	 * @param maxEntries   maximum number of cached entries.
+	 */
+	public ResponseCache(ObjectMapper objectMapper,
+			@Value("${app.api.response-cache.max-entries:10000}") int maxEntries) {
+		this.jsonFactory = objectMapper.getFactory();
+		this.entries = new LruSegments<Entry>(maxEntries);
+	}
+
+	/**
+	 * Return cached JSON of the current state of customer, the JSON is encoded
+	 * and cached if not present or outdated.
+	 *
+	 * @param c customer.
+	 * @return cache entry of customer.
+	 */
+	public Entry get(Customer c) {
+		Entry e = entries.get(c.getId());
+		if (e != null && e.isCurrent(c)) {
+			hits.increment();
+			return e;
+		}
+		misses.increment();
+		long version = c.getVersion(); // read before attributes, later changes make entry outdated
+		e = new Entry(c, version, encode(CustomerProjection.of(c)));
+		entries.put(c.getId(), e);
+		return e;
+	}
+
+	/**
+	 * Write JSON object of cached customer with new serial number, uuid and
+	 * timestamp.
+	 *
+	 * @param e   cache entry.
+	 * @param out output to write to.
+	 * @throws IOException when writing fails.
+	 */
+	public void write(Entry e, OutputStream out) throws IOException {
+		ByteArrayOutputStream head = new ByteArrayOutputStream(64);
+		head.write(SERIAL);
+		writeNumber(head, CustomerDTO.nextSerial());
+		head.write(UUID);
+		writeNumber(head, CustomerDTO.nextUuid());
+		head.write(TIME_SENT);
+		writeNumber(head, System.currentTimeMillis());
+		head.write(',');
+		head.writeTo(out);
+		out.write(e.body);
+	}
+
+	/**
+	 * Remove entry of customer with id, e.g. after the customer was updated or
+	 * deleted.
+	 *
+	 * @param id id of customer.
+	 */
+	public void invalidate(long id) {
+		entries.remove(id);
+	}
+
+	/**
+	 * Return number of lookups answered from the cache.
+	 *
+	 * @return number of cache hits.
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Return number of lookups that encoded JSON.
+	 *
+	 * @return number of cache misses.
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Return number of cached entries.
+	 *
+	 * @return number of cached entries.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/*
+	 * private methods
+	 */
+
+	/**
+	 * Encode customer attributes of projection as JSON object without opening
+	 * brace.
+	 */
+	private byte[] encode(CustomerProjection p) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+		try (JsonGenerator gen = jsonFactory.createGenerator(bytes, JsonEncoding.UTF8)) {
+			gen.writeStartObject();
+			gen.writeStringField("customer-id", p.getId());
+			gen.writeStringField("customer-name", p.getName());
+			gen.writeStringField("customer-contacts", p.getContacts());
+			gen.writeEndObject();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // not thrown by in-memory streams
+		}
+		byte[] json = bytes.toByteArray();
+		byte[] body = new byte[json.length - 1];
+		System.arraycopy(json, 1, body, 0, body.length); // skip '{'
+		return body;
+	}
+
+	private static void writeNumber(ByteArrayOutputStream out, long n) {
+		String s = Long.toString(n);
+		for (int i = 0; i < s.length(); i++) {
+			out.write(s.charAt(i));
+		}
+	}
+
+	/**
+	 * Return strong ETag from 64-bit FNV-1a hash of bytes.
+	 */
+	private static String etag(byte[] bytes) {
+		long h = 0xcbf29ce484222325L;
+		for (byte b : bytes) {
+			h = (h ^ (b & 0xff)) * 0x100000001b3L;
+		}
+		return "\"" + Long.toHexString(h) + "\"";
+	}
+
+}
@@ -0,0 +1,68 @@
+package de.freerider.restapi.dto;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free generator of unique serial numbers. Threads draw serial numbers
+ * from a fixed number of cells, each cell holds a block of consecutive numbers
+ * reserved from a shared counter, the shared counter is only touched once per
+ * block. Threads are spread over cells by hash, such that the number of
+ * reserved blocks does not grow with the number of threads (e.g. one virtual
+ * thread per request). Serial numbers are unique across threads and ascending
+ * per thread, they are not ascending across threads and numbers of blocks not
+ * used up are skipped.
+ */
+
+final class SerialNumberGenerator {
+
+	/*
+	 * serial numbers reserved per cell at once, blocks start at multiples of
+	 * BLOCK such that a cell holding a multiple of BLOCK is used up.
+	 */
+	static final int BLOCK = 1024;
+
+	/*
+	 * longs between cells such that cells do not share a cache line.
+	 */
+	private static final int PAD = 8;
+
+	/*
+	 * number of cells, power of two of at least twice the number of processors.
+	 */
+	static final int CELLS = Integer
+			.highestOneBit(2 * Runtime.getRuntime().availableProcessors() - 1) << 1;
+
+	/*
+	 * start of next unreserved block.
+	 */
+	private final AtomicLong next = new AtomicLong();
+
+	/*
+	 * next serial number of each cell at index {@code i * PAD}.
+	 */
+	private final AtomicLongArray cells = new AtomicLongArray(CELLS * PAD);
+
+	/**
+	 * Return next serial number.
+	 *
+	 * @return serial number unique across threads.
+	 */
+	long next() {
+		int h = System.identityHashCode(Thread.currentThread());
+		int i = ((h ^ (h >>> 16)) & (CELLS - 1)) * PAD;
+		while (true) {
+			long c = cells.get(i);
+			if (c % BLOCK == 0) {
+				// cell used up (or unused), reserve next block
+				long b = next.getAndAdd(BLOCK);
+				if (cells.compareAndSet(i, c, b + 1)) {
+					return b;
+				}
+			} else if (cells.compareAndSet(i, c, c + 1)) {
+				return c;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,96 @@
+package de.freerider.datamodel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test that the regex-free name splitting of Customer.setName(String) yields
+ * the same first- and lastNames as the former regex-based implementation, for
+ * the documented cases and for randomly generated names.
+ */
+class CustomerSplitNameTest {
+
+	private static final String[][] DOCUMENTED = {
+			// name, lastName, firstName
+			{ "Eric Meyer", "Meyer", "Eric" }, //
+			{ "Meyer, Anne", "Meyer", "Anne" }, //
+			{ "Meyer; Anne", "Meyer", "Anne" }, //
+			{ "Tim Schulz-Mueller", "Schulz-Mueller", "Tim" }, //
+			{ "Nadine Ulla Blumenfeld", "Blumenfeld", "Nadine Ulla" }, //
+			{ "Nadine-Ulla Blumenfeld", "Blumenfeld", "Nadine-Ulla" }, //
+			{ "Khaled Saad Mohamed Abdelalim", "Abdelalim", "Khaled Saad Mohamed" }, //
+			{ "Meyer", "Meyer", "" }, //
+			{ "", "", "" }, //
+	};
+
+	/*
+	 * characters random names are composed of: letters, white spaces, control
+	 * characters, separators and non-ASCII letters.
+	 */
+	private static final String ALPHABET = "ab- \t\n\u000B\f\r\u0001,;é ";
+
+	private static final int RANDOM_NAMES = 200_000;
+
+	@Test
+	void documentedCases() {
+		for (String[] c : DOCUMENTED) {
+			Customer customer = new Customer().setName(c[0]);
+			assertEquals(c[1], customer.getLastName(), c[0]);
+			assertEquals(c[2], customer.getFirstName(), c[0]);
+		}
+		Customer customer = new Customer().setName("Eric", "Meyer").setName((String) null);
+		assertEquals("Meyer", customer.getLastName());
+		assertEquals("Eric", customer.getFirstName());
+	}
+
+	@Test
+	void randomNamesMatchFormerImplementation() {
+		Random random = new Random(42);
+		for (int n = 0; n < RANDOM_NAMES; n++) {
+			StringBuilder sb = new StringBuilder();
+			for (int i = random.nextInt(16); i > 0; i--) {
+				sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+			}
+			String name = sb.toString();
+			String[] expected = formerSplitName(name);
+			Customer customer = new Customer().setName(name);
+			assertEquals(expected[0], customer.getFirstName(), name);
+			assertEquals(expected[1], customer.getLastName(), name);
+		}
+	}
+
+	@Test
+	void resultDoesNotDependOnPreviousName() {
+		Customer customer = new Customer().setName("Eric Meyer").setName("Anne Schmidt");
+		assertEquals("Schmidt", customer.getLastName());
+		assertEquals("Anne", customer.getFirstName());
+	}
+
+	/**
+	 * Former regex-based implementation of Customer.splitName applied to a new
+	 * Customer (empty first- and lastName).
+	 * 
+	 * @return firstName, lastName.
+	 */
+	private static String[] formerSplitName(String name) {
+		String first = "";
+		String last = "";
+		String[] spl1 = name.split("[,;]");
+		if (spl1.length > 1) {
+			last = spl1[0].trim();
+			first = spl1[spl1.length - 1].trim();
+		} else {
+			for (String s : name.split("\\s+")) {
+				if (last.length() > 0) {
+					first += (first.length() == 0 ? "" : " ") + last;
+				}
+				last = s;
+			}
+		}
+		return new String[] { first.trim(), last.trim() };
+	}
+
+}
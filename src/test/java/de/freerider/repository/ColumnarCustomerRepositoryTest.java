@@ -0,0 +1,134 @@
+package de.freerider.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import de.freerider.datamodel.Customer;
+
+/**
+ * Differential test of ColumnarCustomerRepository against the map-backed
+ * CustomerRepository and comparison of their memory footprints.
+ */
+class ColumnarCustomerRepositoryTest {
+
+	private static final int OPERATIONS = 300_000;
+
+	private static final int CUSTOMERS = 200_000;
+
+	@Test
+	void randomOperationsMatchCustomerRepository() {
+		Random random = new Random(7);
+		ColumnarCustomerRepository columnar = new ColumnarCustomerRepository();
+		CustomerRepository reference = new CustomerRepository();
+		for (int i = 0; i < OPERATIONS; i++) {
+			long id = random.nextInt(5000);
+			switch (random.nextInt(4)) {
+			case 0: // save new or replace stored customer
+				columnar.save(customer(id, random));
+				reference.save(copy(columnar.findById(id).get()));
+				break;
+			case 1: // update stored customer and save it again
+				Optional<Customer> stored = columnar.findById(id);
+				if (stored.isPresent()) {
+					Customer c = stored.get();
+					c.setName("Update " + i).addContact("u" + i + "@example.com")
+							.setStatus(Customer.Status.values()[random.nextInt(Customer.Status.values().length)]);
+					if (random.nextBoolean()) {
+						c.deleteContact(0);
+					}
+					columnar.save(c);
+					reference.save(copy(c));
+				}
+				break;
+			case 2:
+				columnar.deleteById(id);
+				reference.deleteById(id);
+				break;
+			default:
+				assertSame(reference.findById(id), columnar.findById(id));
+			}
+			assertEquals(reference.count(), columnar.count());
+		}
+		for (Customer c : reference.findAll()) {
+			assertSame(Optional.of(c), columnar.findById(c.getId()));
+		}
+	}
+
+	@Test
+	void columnarStoreHasSmallerFootprint() {
+		Random random = new Random(11);
+		long heap0 = usedHeap();
+		CustomerRepository reference = new CustomerRepository();
+		for (int i = 0; i < CUSTOMERS; i++) {
+			reference.save(customer(i, random));
+		}
+		long referenceBytes = usedHeap() - heap0;
+		reference.deleteAll();
+		reference = null;
+		//
+		random = new Random(11);
+		heap0 = usedHeap();
+		ColumnarCustomerRepository columnar = new ColumnarCustomerRepository();
+		for (int i = 0; i < CUSTOMERS; i++) {
+			columnar.save(customer(i, random));
+		}
+		long columnarHeapBytes = usedHeap() - heap0;
+		long columnarBytes = columnarHeapBytes + columnar.offHeapBytes();
+		assertTrue(columnarBytes < referenceBytes, "ColumnarCustomerRepository " + columnarHeapBytes + " bytes heap + "
+				+ columnar.offHeapBytes() + " bytes off-heap, CustomerRepository " + referenceBytes + " bytes heap");
+	}
+
+	/*
+	 * private methods
+	 */
+
+	private static Customer customer(long id, Random random) {
+		Customer c = new Customer().setId(id).setName("First" + random.nextInt(1000) + " Last" + random.nextInt(5000));
+		for (int k = random.nextInt(3); k >= 0; k--) {
+			c.addContact("c" + random.nextInt(1_000_000) + "@example.com");
+		}
+		return c;
+	}
+
+	private static Customer copy(Customer c) {
+		Customer copy = new Customer().setId(c.getId()).setName(c.getFirstName(), c.getLastName())
+				.setStatus(c.getStatus());
+		copy.addContacts(c.getContacts());
+		return copy;
+	}
+
+	private static void assertSame(Optional<Customer> expected, Optional<Customer> actual) {
+		assertEquals(expected.isPresent(), actual.isPresent());
+		if (expected.isPresent()) {
+			Customer e = expected.get();
+			Customer a = actual.get();
+			assertEquals(e.getId(), a.getId());
+			assertEquals(e.getLastName(), a.getLastName());
+			assertEquals(e.getFirstName(), a.getFirstName());
+			assertEquals(e.getStatus(), a.getStatus());
+			assertEquals(contacts(e), contacts(a));
+		}
+	}
+
+	private static List<String> contacts(Customer c) {
+		List<String> contacts = new ArrayList<String>();
+		c.getContacts().forEach(contacts::add);
+		return contacts;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
@@ -0,0 +1,203 @@
+package de.freerider.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import de.freerider.datamodel.Customer;
+
+/**
+ * Multithreaded stress test that drives mixed read/write workloads against
+ * CustomerRepository and checks that no writes are lost and that findAll()
+ * can be iterated while other threads modify the repository.
+ */
+class CustomerRepositoryConcurrencyTest {
+
+	private static final int THREADS = 16;
+
+	private static final int IDS_PER_THREAD = 2_000;
+
+	private static final int OPS_PER_THREAD = 100_000;
+
+	@Test
+	void mixedWorkloadLosesNoWrites() throws Exception {
+		CustomerRepository repository = new CustomerRepository();
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Set<Long>>> results = new ArrayList<Future<Set<Long>>>();
+		//
+		for (int t = 0; t < THREADS; t++) {
+			final long base = (long) t * IDS_PER_THREAD;
+			results.add(pool.submit(() -> {
+				// each thread owns id range [base, base + IDS_PER_THREAD) and tracks its ids
+				Set<Long> owned = new HashSet<Long>();
+				ThreadLocalRandom rnd = ThreadLocalRandom.current();
+				start.await();
+				for (int i = 0; i < OPS_PER_THREAD; i++) {
+					long id = base + rnd.nextInt(IDS_PER_THREAD);
+					int op = rnd.nextInt(100);
+					if (op < 30) {
+						repository.save(new Customer().setId(id).setName("Eric", "Meyer"));
+						owned.add(id);
+					} else if (op < 50) {
+						repository.deleteById(id);
+						owned.remove(id);
+					} else if (op < 99) {
+						assertEquals(owned.contains(id), repository.findById(id).isPresent());
+					} else {
+						// iterate full snapshot while other threads write
+						int n = 0;
+						for (Customer c : repository.findAll()) {
+							n += c.getId() >= 0 ? 1 : 0;
+						}
+						assertTrue(n >= 0);
+					}
+				}
+				return owned;
+			}));
+		}
+		start.countDown();
+		long expected = 0;
+		for (Future<Set<Long>> f : results) {
+			Set<Long> owned = f.get(2, TimeUnit.MINUTES);
+			expected += owned.size();
+			for (long id : owned) {
+				assertTrue(repository.existsById(id));
+			}
+		}
+		pool.shutdown();
+		//
+		assertEquals(expected, repository.count());
+		int n = 0;
+		for (@SuppressWarnings("unused")
+		Customer c : repository.findAll()) {
+			n++;
+		}
+		assertEquals(expected, n);
+	}
+
+	@Test
+	void findAllIsUnaffectedByLaterWrites() {
+		CustomerRepository repository = new CustomerRepository();
+		for (long id = 0; id < 100; id++) {
+			repository.save(new Customer().setId(id));
+		}
+		Iterable<Customer> snapshot = repository.findAll();
+		repository.deleteAll();
+		int n = 0;
+		for (@SuppressWarnings("unused")
+		Customer c : snapshot) {
+			n++;
+		}
+		assertEquals(100, n);
+		assertEquals(0, repository.count());
+	}
+
+	@Test
+	void findAllReflectsChangesSincePreviousSnapshot() {
+		CustomerRepository repository = new CustomerRepository();
+		for (long id = 0; id < 100; id++) {
+			repository.save(new Customer().setId(id));
+		}
+		List<Customer> before = (List<Customer>) repository.findAll();
+		Customer replaced = new Customer().setId(5);
+		repository.save(replaced);
+		repository.save(new Customer().setId(100));
+		repository.deleteById(7L);
+		List<Customer> after = (List<Customer>) repository.findAll();
+		assertEquals(100, before.size());
+		assertEquals(100, after.size());
+		assertTrue(after.contains(replaced.readOnlyCopy()) && !before.contains(replaced.readOnlyCopy()));
+		assertEquals(after, repository.findAll());
+	}
+
+	@Test
+	void updateWhileSnapshotIsIterated() throws Exception {
+		CustomerRepository repository = new CustomerRepository();
+		for (long id = 0; id < 100; id++) {
+			repository.save(new Customer().setId(id).setName("Eric", "Meyer").addContact("eric@mail.de"));
+		}
+		Iterable<Customer> snapshot = repository.findAll();
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		Future<?> updater = pool.submit(() -> {
+			for (int i = 0; i < 2_000; i++) {
+				long id = i % 100;
+				repository.update(new Customer().setId(id).setName("Anne " + i, "Meyer")
+						.addContact("anne" + i + "@mail.de"));
+			}
+		});
+		int contacts = 0;
+		try {
+			while (!updater.isDone()) {
+				for (Customer c : snapshot) {
+					assertEquals("Meyer, Eric", c.getName());
+					for (String contact : c.getContacts()) {
+						contacts += contact.length() > 0 ? 1 : 0;
+					}
+				}
+			}
+			updater.get(); // rethrows failure of update()
+		} finally {
+			pool.shutdownNow();
+		}
+		assertTrue(contacts > 0);
+		// snapshot froze the state before the updates
+		for (Customer c : snapshot) {
+			assertEquals(1, c.contactsCount());
+			assertEquals(21, repository.findById(c.getId()).get().contactsCount());
+		}
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.iterator().next().setName("Anne Meyer"));
+	}
+
+	@Test
+	void findAllContainsAtomicBatchesWhole() throws Exception {
+		CustomerRepository repository = new CustomerRepository();
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		Future<?> writer = pool.submit(() -> {
+			for (int i = 0; i < 2_000; i++) {
+				List<Customer> batch = new ArrayList<Customer>();
+				for (long id = 0; id < 100; id++) {
+					batch.add(new Customer().setId(i * 100L + id));
+				}
+				repository.insertAll(batch);
+				if (i % 10 == 9) {
+					repository.deleteAll();
+				}
+			}
+		});
+		try {
+			while (!writer.isDone()) {
+				assertEquals(0, ((List<Customer>) repository.findAll()).size() % 100);
+			}
+			writer.get();
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void nullStatusIsIgnored() {
+		CustomerRepository repository = new CustomerRepository();
+		Customer c = new Customer().setId(1).setStatus(Customer.Status.Active);
+		repository.save(c);
+		c.setStatus(null);
+		repository.save(new Customer().setId(2).setStatus(null));
+		assertEquals(Customer.Status.Active, c.getStatus());
+		assertEquals(1, repository.countByStatus(Customer.Status.Active));
+		assertEquals(1, repository.countByStatus(Customer.Status.New));
+	}
+
+}
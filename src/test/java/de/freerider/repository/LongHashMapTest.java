@@ -0,0 +1,73 @@
+package de.freerider.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Differential test of LongHashMap against HashMap with random operations on
+ * keys from a small range (many collisions and backward shifts on removal).
+ */
+class LongHashMapTest {
+
+	private static final int OPERATIONS = 2_000_000;
+
+	@Test
+	void randomOperationsMatchHashMap() {
+		Random random = new Random(42);
+		LongHashMap<String> map = new LongHashMap<String>();
+		Map<Long, String> expected = new HashMap<Long, String>();
+		for (int i = 0; i < OPERATIONS; i++) {
+			// keys spread over low and high bits, negative keys included
+			long key = (random.nextInt(4096) - 1024) * (random.nextBoolean() ? 1L : 1L << 40);
+			switch (random.nextInt(10)) {
+			case 0:
+			case 1:
+			case 2:
+			case 3:
+				String value = Integer.toString(i);
+				assertEquals(expected.put(key, value), map.put(key, value));
+				break;
+			case 4:
+			case 5:
+			case 6:
+				assertEquals(expected.remove(key), map.remove(key));
+				break;
+			case 7:
+				assertEquals(expected.containsKey(key), map.containsKey(key));
+				break;
+			case 8:
+				assertEquals(expected.get(key), map.get(key));
+				break;
+			default:
+				if (random.nextInt(100_000) == 0) {
+					expected.clear();
+					map.clear();
+				}
+			}
+			assertEquals(expected.size(), map.size());
+			if (i % 100_000 == 0) {
+				assertSameValues(expected, map);
+			}
+		}
+		assertSameValues(expected, map);
+	}
+
+	private static void assertSameValues(Map<Long, String> expected, LongHashMap<String> map) {
+		List<String> values = new ArrayList<String>();
+		for (String v : map.values()) {
+			values.add(v);
+		}
+		List<String> expectedValues = new ArrayList<String>(expected.values());
+		values.sort(null);
+		expectedValues.sort(null);
+		assertEquals(expectedValues, values);
+	}
+
+}
@@ -0,0 +1,93 @@
+package de.freerider.repository;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+import de.freerider.datamodel.Customer;
+
+/**
+ * Micro-benchmark of id lookups in CustomerRepository. Runs as a program,
+ * not as a test, such that unit tests do not depend on timing:
+ *
+ * <pre>
+ * {@code
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=de.freerider.repository.RepositoryBenchmark
+ * }
+ * </pre>
+ *
+ * Each operation is run for warm-up rounds, then for measured rounds, the
+ * median of measured rounds is reported in ns per operation. Timings quoted
+ * for changes of the repository are measured with this program on the same
+ * machine before and after the change.
+ */
+public final class RepositoryBenchmark {
+
+	private static final int CUSTOMERS = 200_000;
+
+	private static final int OPS = 1_000_000;
+
+	private static final int WARMUP_ROUNDS = 5;
+
+	private static final int ROUNDS = 10;
+
+	/*
+	 * results of operations, printed such that operations are not eliminated.
+	 */
+	private static long sink = 0;
+
+	public static void main(String[] args) {
+		CustomerRepository repository = new CustomerRepository();
+		for (long id = 0; id < CUSTOMERS; id++) {
+			repository.save(new Customer().setId(id).setName("Eric", "Meyer"));
+		}
+		Random random = new Random(1);
+		long[] hits = new long[OPS];
+		long[] misses = new long[OPS];
+		for (int i = 0; i < OPS; i++) {
+			hits[i] = random.nextInt(CUSTOMERS);
+			misses[i] = CUSTOMERS + random.nextInt(CUSTOMERS);
+		}
+		//
+		run("findById, found", () -> {
+			long n = 0;
+			for (long id : hits) {
+				n += repository.findById(id).isPresent() ? 1 : 0;
+			}
+			return n;
+		});
+		run("findById, not found", () -> {
+			long n = 0;
+			for (long id : misses) {
+				n += repository.findById(id).isPresent() ? 1 : 0;
+			}
+			return n;
+		});
+		run("existsById, found", () -> {
+			long n = 0;
+			for (long id : hits) {
+				n += repository.existsById(id) ? 1 : 0;
+			}
+			return n;
+		});
+		System.out.println("(" + sink + ")");
+	}
+
+	/**
+	 * Run operation OPS times per round and print median time per operation.
+	 */
+	private static void run(String name, LongSupplier op) {
+		for (int r = 0; r < WARMUP_ROUNDS; r++) {
+			sink += op.getAsLong();
+		}
+		long[] elapsed = new long[ROUNDS];
+		for (int r = 0; r < ROUNDS; r++) {
+			long t0 = System.nanoTime();
+			sink += op.getAsLong();
+			elapsed[r] = System.nanoTime() - t0;
+		}
+		Arrays.sort(elapsed);
+		System.out.println(String.format("%-24s %8.1f ns/op", name, (double) elapsed[ROUNDS / 2] / OPS));
+	}
+
+}
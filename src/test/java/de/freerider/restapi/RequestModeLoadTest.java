@@ -0,0 +1,174 @@
+package de.freerider.restapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+
+import de.freerider.app.Application;
+import de.freerider.datamodel.Customer;
+import de.freerider.repository.CustomerRepository;
+
+/**
+ * Load test comparing request modes pool and async. The application is
+ * started with a small Tomcat pool and a repository whose lookups block (as
+ * with remote persistence), many clients request single customers at the same
+ * time. Measured are the maximum number of requests in flight in the
+ * repository and the 99th percentile of response times. In mode pool, requests
+ * in flight are limited by Tomcat's pool, in mode async by the executor of
+ * asynchronous requests.
+ */
+class RequestModeLoadTest {
+
+	private static final Logger log = LoggerFactory.getLogger(RequestModeLoadTest.class);
+
+	private static final int TOMCAT_THREADS = 8;
+
+	private static final int ASYNC_THREADS = 64;
+
+	private static final int CLIENTS = 64;
+
+	private static final int REQUESTS_PER_CLIENT = 10;
+
+	private static final long LOOKUP_MILLIS = 20;
+
+	@Test
+	void asyncModeServesMoreRequestsInFlight() throws Exception {
+		Result pool = run("pool");
+		Result async = run("async");
+		log.info("mode=pool max-in-flight={} p99={} ms, mode=async max-in-flight={} p99={} ms", pool.maxInFlight,
+				pool.p99Millis, async.maxInFlight, async.p99Millis);
+		assertTrue(pool.maxInFlight <= TOMCAT_THREADS, "pool: " + pool.maxInFlight + " in flight");
+		assertTrue(async.maxInFlight > TOMCAT_THREADS, "async: " + async.maxInFlight + " in flight");
+		assertTrue(async.p99Millis < pool.p99Millis,
+				"p99 async: " + async.p99Millis + " ms, pool: " + pool.p99Millis + " ms");
+	}
+
+	/*
+	 * private methods
+	 */
+
+	private static class Result {
+		int maxInFlight;
+		long p99Millis;
+	}
+
+	/**
+	 * Start application in request mode, warm up, then let all clients send
+	 * their requests at once.
+	 */
+	private Result run(String mode) throws Exception {
+		SpringApplication app = new SpringApplication(Application.class, SlowRepositoryConfig.class);
+		ConfigurableApplicationContext context = app.run("--server.port=0",
+				"--server.tomcat.threads.max=" + TOMCAT_THREADS, "--server.tomcat.threads.min-spare=" + TOMCAT_THREADS,
+				"--app.api.request-mode=" + mode, "--app.api.async.pool-size=" + ASYNC_THREADS,
+				"--spring.main.allow-bean-definition-overriding=true", "--spring.main.banner-mode=off",
+				"--logging.level.de.freerider.restapi.CustomersDTOController=WARN");
+		ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+		try {
+			int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+			URI uri = URI.create("http://localhost:" + port
+					+ context.getEnvironment().getProperty("app.api.endpoints.customers") + "/1");
+			HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+			SlowRepository repository = context.getBean(SlowRepository.class);
+			load(http, uri, clients, 1);
+			repository.maxInFlight.set(0);
+			//
+			long[] latencies = load(http, uri, clients, REQUESTS_PER_CLIENT);
+			Arrays.sort(latencies);
+			Result result = new Result();
+			result.maxInFlight = repository.maxInFlight.get();
+			result.p99Millis = latencies[(int) Math.ceil(latencies.length * 0.99) - 1] / 1_000_000;
+			return result;
+		} finally {
+			clients.shutdownNow();
+			context.close();
+		}
+	}
+
+	/**
+	 * Send requests from all clients at once.
+	 *
+	 * @return response times of all requests in ns.
+	 */
+	private long[] load(HttpClient http, URI uri, ExecutorService clients, int requests) throws Exception {
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<long[]>> results = new ArrayList<Future<long[]>>();
+		for (int c = 0; c < CLIENTS; c++) {
+			results.add(clients.submit(() -> {
+				HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+				long[] latencies = new long[requests];
+				start.await();
+				for (int i = 0; i < requests; i++) {
+					long t = System.nanoTime();
+					HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+					latencies[i] = System.nanoTime() - t;
+					assertEquals(200, response.statusCode());
+				}
+				return latencies;
+			}));
+		}
+		start.countDown();
+		long[] all = new long[CLIENTS * requests];
+		for (int c = 0; c < CLIENTS; c++) {
+			System.arraycopy(results.get(c).get(), 0, all, c * requests, requests);
+		}
+		return all;
+	}
+
+	/**
+	 * Replaces the application's repository, not annotated such that it is not
+	 * picked up by component scans of other tests.
+	 */
+	static class SlowRepositoryConfig {
+		@Bean
+		public CustomerRepository customerRepository() {
+			return new SlowRepository();
+		}
+	}
+
+	/**
+	 * Repository whose lookups block for LOOKUP_MILLIS and that counts lookups in
+	 * flight.
+	 */
+	static class SlowRepository extends CustomerRepository {
+
+		final AtomicInteger inFlight = new AtomicInteger();
+
+		final AtomicInteger maxInFlight = new AtomicInteger();
+
+		@Override
+		public Optional<Customer> findById(Long id) {
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(LOOKUP_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				inFlight.decrementAndGet();
+			}
+			return super.findById(id);
+		}
+	}
+
+}
@@ -0,0 +1,56 @@
+package de.freerider.restapi.dto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.freerider.datamodel.Customer;
+
+/**
+ * Test that CustomerDTOModule produces and accepts the same JSON as the
+ * default mapping of CustomerDTO.
+ */
+class CustomerDTOModuleTest {
+
+	private final ObjectMapper reflective = new ObjectMapper()
+			.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+	private final ObjectMapper module = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+			.registerModule(new CustomerDTOModule());
+
+	private static final String JSON = "[" //
+			+ "{\"serialnumber\":1,\"uuid\":12734634,\"time-sent\":1639502608151,\"customer-id\":\"1\","
+			+ "\"customer-name\":\"Meyer, Eric\",\"customer-contacts\":\"eric98@yahoo.com; (030) 7000-640000\"},"
+			// numeric id, timestamp as string, unknown and missing fields, field order
+			+ "{\"customer-name\":\"Anne Bayer\",\"customer-id\":12,\"time-sent\":\"1639502608151\","
+			+ "\"extra\":{\"a\":[1,2]},\"customer-contacts\":null},"
+			// empty object
+			+ "{}]";
+
+	@Test
+	void serializesLikeDefaultMapping() throws Exception {
+		CustomerDTO dto = new CustomerDTO(new Customer().setId(7).setName("Eric Meyer")
+				.addContact("eric98@yahoo.com").addContact("(030) 7000-640000"));
+		assertEquals(reflective.writeValueAsString(dto), module.writeValueAsString(dto));
+	}
+
+	@Test
+	void deserializesLikeDefaultMapping() throws Exception {
+		TypeReference<List<CustomerDTO>> type = new TypeReference<List<CustomerDTO>>() {
+		};
+		List<CustomerDTO> expected = reflective.readValue(JSON, type);
+		List<CustomerDTO> actual = module.readValue(JSON, type);
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			// compare through the default mapping, which is verified above
+			assertEquals(reflective.writeValueAsString(expected.get(i)), reflective.writeValueAsString(actual.get(i)));
+		}
+	}
+
+}
@@ -0,0 +1,54 @@
+package de.freerider.restapi.dto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test that CustomerValidator parses ids like Long.parseLong() and reports all
+ * violated rules of a record.
+ */
+class CustomerValidatorTest {
+
+	@Test
+	void parseIdMatchesLongParseLong() {
+		String[] ids = { "0", "1", "+17", "007", "9223372036854775807", "9223372036854775808", "-1", "", "+",
+				"1AA", " 1", "12 ", "99999999999999999999", "\u0661\u0662" };
+		for (String id : ids) {
+			long expected;
+			try {
+				expected = Math.max(-1, Long.parseLong(id));
+			} catch (NumberFormatException e) {
+				expected = -1;
+			}
+			assertEquals(expected, CustomerValidator.parseId(id), id);
+		}
+		assertEquals(-1, CustomerValidator.parseId(null));
+	}
+
+	@Test
+	void allViolatedRulesAreReported() {
+		long now = System.currentTimeMillis();
+		assertEquals(CustomerValidator.VALID, CustomerValidator.validate(1, 1, 1, now, "Meyer, Eric", ""));
+		int rejects = CustomerValidator.validate(-1, 1, -1, now + 3_600_000, "", null);
+		for (CustomerValidator.Rule rule : CustomerValidator.Rule.values()) {
+			assertEquals(rule != CustomerValidator.Rule.B_SERIAL, CustomerValidator.isViolated(rejects, rule),
+					rule.name());
+		}
+		assertEquals("invalid: customer-id, uuid, time-sent, customer-name, customer-contacts",
+				CustomerValidator.describe(rejects));
+	}
+
+	@Test
+	void invalidDTOKeepsRejects() {
+		CustomerDTO dto = new CustomerDTO();
+		dto.id = "1AA";
+		dto.name = "Meyer, Eric";
+		dto.contacts = "";
+		dto.timeSent = System.currentTimeMillis();
+		assertTrue(dto.create().isEmpty());
+		assertEquals(CustomerValidator.Rule.A_ID.bit(), dto.rejects());
+	}
+
+}
@@ -0,0 +1,69 @@
+package de.freerider.restapi.dto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import de.freerider.datamodel.Customer;
+
+/**
+ * Test that CustomerDTO created concurrently from many threads receive unique
+ * serial numbers.
+ */
+class SerialNumberGeneratorTest {
+
+	private static final int THREADS = 64;
+
+	private static final int DTOS_PER_THREAD = 20_000;
+
+	@Test
+	void concurrentDTOHaveUniqueSerialNumbers() throws Exception {
+		Customer customer = new Customer().setId(1).setName("Eric Meyer");
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<long[]>> results = new ArrayList<Future<long[]>>();
+		for (int t = 0; t < THREADS; t++) {
+			results.add(pool.submit(() -> {
+				long[] serials = new long[DTOS_PER_THREAD];
+				start.await();
+				for (int i = 0; i < DTOS_PER_THREAD; i++) {
+					serials[i] = new CustomerDTO(customer).serial;
+				}
+				return serials;
+			}));
+		}
+		start.countDown();
+		Set<Long> unique = new HashSet<Long>();
+		for (Future<long[]> result : results) {
+			for (long serial : result.get()) {
+				unique.add(serial);
+			}
+		}
+		pool.shutdown();
+		assertEquals(THREADS * DTOS_PER_THREAD, unique.size());
+	}
+
+	@Test
+	void shortLivedThreadsDoNotReserveBlocksEach() throws Exception {
+		SerialNumberGenerator generator = new SerialNumberGenerator();
+		long[] max = new long[1];
+		for (int t = 0; t < 2_000; t++) {
+			// one thread per request as with virtual threads
+			Thread thread = new Thread(() -> max[0] = Math.max(max[0], generator.next()));
+			thread.start();
+			thread.join();
+		}
+		assertTrue(max[0] < (SerialNumberGenerator.CELLS + 1) * SerialNumberGenerator.BLOCK);
+	}
+
+}